@@ -0,0 +1,98 @@
+package org.embulk.output.kintone;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.time.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the conversions with the option resolved per value ({@code getFieldValue}) and once
+ * per column ({@code convert}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class KintoneColumnTypeBenchmark {
+  private KintoneColumnOption option;
+  private KintoneColumnFormat format;
+  private long number;
+  private double decimal;
+  private Timestamp timestamp;
+  private String values;
+
+  @Setup
+  public void setup() {
+    option =
+        (KintoneColumnOption)
+            Proxy.newProxyInstance(
+                KintoneColumnOption.class.getClassLoader(),
+                new Class<?>[] {KintoneColumnOption.class},
+                (proxy, method, args) -> {
+                  switch (method.getName()) {
+                    case "getTimezone":
+                      return "Asia/Tokyo";
+                    case "getValueSeparator":
+                      return ",";
+                    default:
+                      throw new UnsupportedOperationException(method.getName());
+                  }
+                });
+    format = KintoneColumnFormat.of(option);
+    number = 1234567890L;
+    decimal = 12345.678d;
+    timestamp = Timestamp.ofInstant(Instant.parse("2024-01-02T03:04:05Z"));
+    values = "a,b,c,d";
+  }
+
+  @Benchmark
+  public Object numberFromLongPerValue() {
+    return KintoneColumnType.NUMBER.getFieldValue(number, option);
+  }
+
+  @Benchmark
+  public Object numberFromLong() {
+    return KintoneColumnType.NUMBER.convert(number, format);
+  }
+
+  @Benchmark
+  public Object numberFromDoublePerValue() {
+    return KintoneColumnType.NUMBER.getFieldValue(decimal, option);
+  }
+
+  @Benchmark
+  public Object numberFromDouble() {
+    return KintoneColumnType.NUMBER.convert(decimal, format);
+  }
+
+  @Benchmark
+  public void datesPerValue(Blackhole blackhole) {
+    blackhole.consume(KintoneColumnType.DATE.getFieldValue(timestamp, option));
+    blackhole.consume(KintoneColumnType.TIME.getFieldValue(timestamp, option));
+    blackhole.consume(KintoneColumnType.DATETIME.getFieldValue(number, option));
+  }
+
+  @Benchmark
+  public void dates(Blackhole blackhole) {
+    blackhole.consume(KintoneColumnType.DATE.convert(timestamp, format));
+    blackhole.consume(KintoneColumnType.TIME.convert(timestamp, format));
+    blackhole.consume(KintoneColumnType.DATETIME.convert(number, format));
+  }
+
+  @Benchmark
+  public Object multiSelectPerValue() {
+    return KintoneColumnType.MULTI_SELECT.getFieldValue(values, option);
+  }
+
+  @Benchmark
+  public Object multiSelect() {
+    return KintoneColumnType.MULTI_SELECT.convert(values, format);
+  }
+}
@@ -0,0 +1,98 @@
+package org.embulk.output.kintone;
+
+import com.kintone.client.api.app.GetAppSettingsRequest;
+import com.kintone.client.api.common.BulkRequestsRequest;
+import com.kintone.client.api.common.BulkRequestsResponseBody;
+import com.kintone.client.api.record.CreateCursorRequest;
+import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import com.kintone.client.api.record.GetRecordsRequest;
+import com.kintone.client.api.record.GetRecordsResponseBody;
+import com.kintone.client.api.record.UpdateRecordsRequest;
+import com.kintone.client.model.app.field.FieldProperty;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/** Sends requests with kintone-java-client. */
+public class ClientTransport implements KintoneTransport {
+  private final com.kintone.client.KintoneClient client;
+
+  public ClientTransport(com.kintone.client.KintoneClient client) {
+    this.client = client;
+  }
+
+  @Override
+  public Map<String, FieldProperty> getFormFields(long app) {
+    return client.app().getFormFields(app);
+  }
+
+  @Override
+  public long getAppRevision(long app) {
+    GetAppSettingsRequest request = new GetAppSettingsRequest();
+    request.setApp(app);
+    return client.app().getAppSettings(request).getRevision();
+  }
+
+  @Override
+  public List<Long> addRecords(long app, List<Record> records) {
+    return client.record().addRecords(app, records);
+  }
+
+  @Override
+  public void updateRecords(long app, List<RecordForUpdate> records) {
+    client.record().updateRecords(app, records);
+  }
+
+  @Override
+  public void upsertRecords(long app, List<RecordForUpdate> records) {
+    UpdateRecordsRequest request = new UpdateRecordsRequest();
+    request.setApp(app);
+    request.setRecords(records);
+    request.setUpsert(true);
+    client.record().updateRecords(request);
+  }
+
+  @Override
+  public GetRecordsResponseBody getRecords(GetRecordsRequest request) {
+    return client.record().getRecords(request);
+  }
+
+  @Override
+  public String createCursor(long app, List<String> fields, String query, Long size) {
+    if (size == null) {
+      return client.record().createCursor(app, fields, query);
+    }
+    CreateCursorRequest request = new CreateCursorRequest();
+    request.setApp(app);
+    request.setFields(fields);
+    request.setQuery(query);
+    request.setSize(size);
+    return client.record().createCursor(request).getId();
+  }
+
+  @Override
+  public GetRecordsByCursorResponseBody getRecordsByCursor(String id) {
+    return client.record().getRecordsByCursor(id);
+  }
+
+  @Override
+  public void deleteCursor(String id) {
+    client.record().deleteCursor(id);
+  }
+
+  @Override
+  public BulkRequestsResponseBody bulkRequests(BulkRequestsRequest request) {
+    return client.bulkRequests().bulkRequests(request);
+  }
+
+  @Override
+  public void close() {
+    try {
+      client.close();
+    } catch (IOException e) {
+      throw new RuntimeException("kintone throw exception", e);
+    }
+  }
+}
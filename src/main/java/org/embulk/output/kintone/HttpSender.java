@@ -0,0 +1,129 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kintone.client.exception.KintoneApiRuntimeException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.embulk.output.kintone.encoder.EncodedRecords;
+
+/**
+ * Sends JSON requests to the REST API of the app over HTTP connections of the JDK, authenticated
+ * the same as the client.
+ *
+ * <p>Idle connections are kept alive and reused by the JDK, up to {@code http.maxConnections} per
+ * destination. Responses are parsed as they are read from the connection.
+ */
+public class HttpSender {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final String baseUrl;
+  private final Map<String, String> headers = new LinkedHashMap<>();
+  private final int connectTimeout;
+  private final int readTimeout;
+
+  public HttpSender(PluginTask task) {
+    this(task, "https://" + task.getDomain());
+  }
+
+  HttpSender(PluginTask task, String origin) {
+    baseUrl =
+        task.getGuestSpaceId().isPresent()
+            ? origin + "/k/guest/" + task.getGuestSpaceId().get() + "/v1"
+            : origin + "/k/v1";
+    if (task.getBasicAuthUsername().isPresent() && task.getBasicAuthPassword().isPresent()) {
+      headers.put(
+          "Authorization",
+          "Basic " + encode(task.getBasicAuthUsername().get(), task.getBasicAuthPassword().get()));
+    }
+    if (task.getUsername().isPresent() && task.getPassword().isPresent()) {
+      headers.put(
+          "X-Cybozu-Authorization", encode(task.getUsername().get(), task.getPassword().get()));
+    } else if (task.getToken().isPresent()) {
+      headers.put("X-Cybozu-API-Token", task.getToken().get());
+    }
+    connectTimeout = task.getHttpConnectTimeoutMillis();
+    readTimeout = task.getHttpReadTimeoutMillis();
+  }
+
+  /**
+   * @return the ids of the added records
+   */
+  public List<Long> addRecords(EncodedRecords records) {
+    return getIds(send("POST", "/records.json", records.getBytes(), records.getLength()));
+  }
+
+  /**
+   * @param path the path of the API with its query string, under that of the app
+   * @param body the body of the request, or null
+   * @return the parsed response
+   */
+  public JsonNode send(String method, String path, byte[] body, int length) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+      connection.setRequestMethod(method);
+      connection.setConnectTimeout(connectTimeout);
+      connection.setReadTimeout(readTimeout);
+      headers.forEach(connection::setRequestProperty);
+      if (body != null) {
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(body, 0, length);
+        }
+      }
+      int statusCode = connection.getResponseCode();
+      if (statusCode >= 400) {
+        String content = read(connection.getErrorStream());
+        // The same as the client, so that errors are retried and logged as usual
+        throw new KintoneApiRuntimeException(
+            "HTTP error status " + statusCode + ", " + content,
+            statusCode,
+            content,
+            Collections.emptyMap());
+      }
+      // Closing the response once parsed lets the JDK keep the connection alive for the next
+      try (InputStream in = connection.getInputStream()) {
+        return MAPPER.readTree(in);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("kintone throw exception", e);
+    }
+  }
+
+  static List<Long> getIds(JsonNode response) {
+    List<Long> ids = new ArrayList<>();
+    response.path("ids").forEach(id -> ids.add(Long.valueOf(id.asText())));
+    return ids;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    if (in == null) {
+      return "";
+    }
+    try (InputStream input = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n = input.read(buffer); n != -1; n = input.read(buffer)) {
+        out.write(buffer, 0, n);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String encode(String username, String password) {
+    String credentials = username + ":" + password;
+    return Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,200 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.kintone.client.api.common.BulkRequestsRequest;
+import com.kintone.client.api.common.BulkRequestsResponseBody;
+import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import com.kintone.client.api.record.GetRecordsRequest;
+import com.kintone.client.api.record.GetRecordsResponseBody;
+import com.kintone.client.model.app.field.FieldProperty;
+import com.kintone.client.model.record.FieldType;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import com.kintone.client.model.record.UpdateKey;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+import org.embulk.output.kintone.encoder.FieldValueEncoder;
+
+/**
+ * Sends writes and cursors as plain JSON with a {@link HttpSender}, and the other requests with
+ * the client.
+ *
+ * <p>Records with files or subtables are sent with the client, since they are not encoded.
+ */
+public class HttpTransport implements KintoneTransport {
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private final HttpSender sender;
+  private final KintoneTransport client;
+
+  public HttpTransport(HttpSender sender, KintoneTransport client) {
+    this.sender = sender;
+    this.client = client;
+  }
+
+  @Override
+  public Map<String, FieldProperty> getFormFields(long app) {
+    return client.getFormFields(app);
+  }
+
+  @Override
+  public long getAppRevision(long app) {
+    return sender.send("GET", "/app/settings.json?app=" + app, null, 0).get("revision").asLong();
+  }
+
+  @Override
+  public List<Long> addRecords(long app, List<Record> records) {
+    if (!records.stream().allMatch(HttpTransport::isEncoded)) {
+      return client.addRecords(app, records);
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator generator = FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeNumberField("app", app);
+      generator.writeArrayFieldStart("records");
+      for (Record record : records) {
+        writeRecord(generator, record);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new RuntimeException("kintone throw exception", e);
+    }
+    JsonNode response = sender.send("POST", "/records.json", body.toByteArray(), body.size());
+    return HttpSender.getIds(response);
+  }
+
+  @Override
+  public void updateRecords(long app, List<RecordForUpdate> records) {
+    updateRecords(app, records, false);
+  }
+
+  @Override
+  public void upsertRecords(long app, List<RecordForUpdate> records) {
+    updateRecords(app, records, true);
+  }
+
+  @Override
+  public GetRecordsResponseBody getRecords(GetRecordsRequest request) {
+    return client.getRecords(request);
+  }
+
+  @Override
+  public String createCursor(long app, List<String> fields, String query, Long size) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator generator = FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeNumberField("app", app);
+      generator.writeArrayFieldStart("fields");
+      for (String field : fields) {
+        generator.writeString(field);
+      }
+      generator.writeEndArray();
+      generator.writeStringField("query", query);
+      if (size != null) {
+        generator.writeNumberField("size", size);
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new RuntimeException("kintone throw exception", e);
+    }
+    JsonNode response =
+        sender.send("POST", "/records/cursor.json", body.toByteArray(), body.size());
+    return response.get("id").asText();
+  }
+
+  @Override
+  public GetRecordsByCursorResponseBody getRecordsByCursor(String id) {
+    return client.getRecordsByCursor(id);
+  }
+
+  @Override
+  public void deleteCursor(String id) {
+    try {
+      sender.send("DELETE", "/records/cursor.json?id=" + URLEncoder.encode(id, "UTF-8"), null, 0);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public BulkRequestsResponseBody bulkRequests(BulkRequestsRequest request) {
+    return client.bulkRequests(request);
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+
+  private void updateRecords(long app, List<RecordForUpdate> records, boolean upsert) {
+    if (!records.stream().allMatch(record -> isEncoded(record.getRecord()))) {
+      if (upsert) {
+        client.upsertRecords(app, records);
+      } else {
+        client.updateRecords(app, records);
+      }
+      return;
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (JsonGenerator generator = FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeNumberField("app", app);
+      if (upsert) {
+        generator.writeBooleanField("upsert", true);
+      }
+      generator.writeArrayFieldStart("records");
+      for (RecordForUpdate record : records) {
+        generator.writeStartObject();
+        if (record.getUpdateKey() != null) {
+          UpdateKey updateKey = record.getUpdateKey();
+          generator.writeObjectFieldStart("updateKey");
+          generator.writeStringField("field", updateKey.getField());
+          generator.writeStringField("value", toString(updateKey.getValue()));
+          generator.writeEndObject();
+        } else {
+          generator.writeNumberField("id", record.getId());
+        }
+        generator.writeFieldName("record");
+        writeRecord(generator, record.getRecord());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new RuntimeException("kintone throw exception", e);
+    }
+    sender.send("PUT", "/records.json", body.toByteArray(), body.size());
+  }
+
+  private static String toString(Object value) {
+    if (value instanceof BigDecimal) {
+      return ((BigDecimal) value).toPlainString();
+    }
+    return value == null ? null : value.toString();
+  }
+
+  private static boolean isEncoded(Record record) {
+    return record.getFieldCodes(true).stream()
+        .map(record::getFieldType)
+        .noneMatch(type -> type == FieldType.FILE || type == FieldType.SUBTABLE);
+  }
+
+  private static void writeRecord(JsonGenerator generator, Record record) throws IOException {
+    generator.writeStartObject();
+    for (String fieldCode : record.getFieldCodes(true)) {
+      generator.writeObjectFieldStart(fieldCode);
+      generator.writeFieldName("value");
+      FieldValueEncoder.encode(generator, record.getFieldValue(fieldCode));
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+  }
+}
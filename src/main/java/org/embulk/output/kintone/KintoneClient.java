@@ -1,27 +1,39 @@
 package org.embulk.output.kintone;
 
 import com.kintone.client.KintoneClientBuilder;
-import com.kintone.client.RecordClient;
 import com.kintone.client.model.app.field.FieldProperty;
 import com.kintone.client.model.app.field.SubtableFieldProperty;
 import com.kintone.client.model.record.FieldType;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import org.embulk.config.ConfigException;
+import org.embulk.output.kintone.encoder.EncodedRecords;
 import org.embulk.output.kintone.record.Id;
 import org.embulk.output.kintone.util.Lazy;
 import org.embulk.spi.Column;
 import org.embulk.spi.Schema;
 import org.embulk.spi.type.Type;
 import org.embulk.spi.type.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class KintoneClient implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KintoneClient.class);
   private final PluginTask task;
   private final Schema schema;
-  private final com.kintone.client.KintoneClient client;
-  private final Map<String, FieldProperty> fields;
+  private final KintoneTransport transport;
+  // Sends the encoded bodies, whatever the transport of the other requests
+  private final HttpSender sender;
+  // Types of the fields used by the job, given by the task if the form was already validated
+  private final Map<String, FieldType> fieldTypes;
+  // Types of the fields of the form, including subtables, fetched or read when first needed
+  private Function<String, FieldType> form;
 
   public static Lazy<KintoneClient> lazy(Supplier<PluginTask> task, Schema schema) {
     return new Lazy<KintoneClient>() {
@@ -32,6 +44,35 @@ public class KintoneClient implements AutoCloseable {
     };
   }
 
+  /**
+   * Fetches the form and validates the task against it once for all tasks, returning the types of
+   * the fields which the columns of the schema may be written to.
+   */
+  public static Map<String, FieldType> getFieldTypes(PluginTask task, Schema schema) {
+    try (KintoneClient client = new KintoneClient(task, schema)) {
+      // Null types are kept, so that fields known not to exist are not fetched again
+      Map<String, FieldType> fieldTypes = new HashMap<>();
+      for (Column column : schema.getColumns()) {
+        String name = column.getName();
+        putFieldType(client, fieldTypes, task, name);
+        if (name.contains(".")) {
+          // Subtables and their fields, reduced from the columns
+          putFieldType(client, fieldTypes, task, name.replaceFirst("\\..*$", ""));
+          putFieldType(client, fieldTypes, task, name.replaceFirst("^.*\\.", ""));
+        }
+      }
+      return fieldTypes;
+    }
+  }
+
+  private static void putFieldType(
+      KintoneClient client, Map<String, FieldType> fieldTypes, PluginTask task, String name) {
+    KintoneColumnOption option = task.getColumnOptions().get(name);
+    String fieldCode = option != null ? option.getFieldCode() : name;
+    fieldTypes.put(name, client.getFieldType(name));
+    fieldTypes.put(fieldCode, client.getFieldType(fieldCode));
+  }
+
   private KintoneClient(PluginTask task, Schema schema) {
     this.task = task;
     this.schema = schema;
@@ -49,13 +90,54 @@ public class KintoneClient implements AutoCloseable {
     } else {
       throw new ConfigException("Username and password or token must be configured.");
     }
-    client = builder.build();
-    fields = client.app().getFormFields(task.getAppId());
+    KintoneTransport client = new ClientTransport(builder.build());
+    sender = new HttpSender(task);
+    transport =
+        task.getTransport() == KintoneTransportType.HTTP
+            ? new HttpTransport(sender, client)
+            : client;
+    fieldTypes = task.getFieldTypes();
+    if (fieldTypes == null) {
+      KintoneMode.of(task).validate(task, this);
+    }
+  }
+
+  private synchronized Function<String, FieldType> form() {
+    if (form == null) {
+      if (task.getFormCacheDir().isPresent()) {
+        form = readForm(Paths.get(task.getFormCacheDir().get()))::get;
+      } else {
+        Map<String, FieldProperty> fields = fetchForm();
+        form = fieldCode -> getType(fields.get(fieldCode));
+      }
+    }
+    return form;
+  }
+
+  private Map<String, FieldType> readForm(Path directory) {
+    long app = task.getAppId();
+    Integer guestSpaceId = task.getGuestSpaceId().orElse(null);
+    KintoneFormCache cache = new KintoneFormCache(directory, task.getDomain(), app, guestSpaceId);
+    return cache.get(
+        transport.getAppRevision(app),
+        () -> {
+          Map<String, FieldType> fieldTypes = new HashMap<>();
+          fetchForm().forEach((fieldCode, field) -> fieldTypes.put(fieldCode, getType(field)));
+          return fieldTypes;
+        });
+  }
+
+  private Map<String, FieldProperty> fetchForm() {
+    Map<String, FieldProperty> fields = transport.getFormFields(task.getAppId());
     Map<String, FieldProperty> fieldVisitor = new LinkedHashMap<>();
     fields.forEach(
         (field, fieldProperty) -> KintoneClient.addSubTableFields(fieldVisitor, fieldProperty));
     fields.putAll(fieldVisitor);
-    KintoneMode.of(task).validate(task, this);
+    return fields;
+  }
+
+  private static FieldType getType(FieldProperty field) {
+    return field == null ? null : field.getType();
   }
 
   private static void addSubTableFields(
@@ -87,21 +169,44 @@ public class KintoneClient implements AutoCloseable {
   }
 
   public FieldType getFieldType(String fieldCode) {
-    FieldProperty field = fields.get(fieldCode);
-    return field == null ? null : field.getType();
+    if (fieldTypes != null && fieldTypes.containsKey(fieldCode)) {
+      return fieldTypes.get(fieldCode);
+    }
+    return form().apply(fieldCode);
   }
 
-  public RecordClient record() {
-    return client.record();
+  /**
+   * Opens a connection to the domain ahead of the first request with a light one. Failures are left
+   * to the requests.
+   */
+  public void warmUp() {
+    if (fieldTypes == null) {
+      // The form was already fetched to validate the task
+      return;
+    }
+    try {
+      transport.getAppRevision(task.getAppId());
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to warm up the client", e);
+    }
+  }
+
+  public KintoneTransport transport() {
+    return transport;
+  }
+
+  /**
+   * Adds the records of the body, which are only sent over HTTP.
+   *
+   * @return the ids of the added records
+   */
+  public List<Long> addRecords(EncodedRecords records) {
+    return sender.addRecords(records);
   }
 
   @Override
   public void close() {
-    try {
-      client.close();
-    } catch (IOException e) {
-      throw new RuntimeException("kintone throw exception", e);
-    }
+    transport.close();
   }
 
   private void validateId(Column column) {
@@ -0,0 +1,134 @@
+package org.embulk.output.kintone;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.tuple.Pair;
+import org.embulk.output.kintone.util.TemporalCache;
+
+/**
+ * Options of a column used by the conversions of {@link KintoneColumnType}, resolved once.
+ *
+ * <p>A format of a column of a task may also memoize dates and times converted from epoch seconds,
+ * since the same values tend to recur across records.
+ */
+public class KintoneColumnFormat {
+  private static final int SECONDS_PER_DAY = 86400;
+  private static final KintoneColumnFormat DEFAULT = new KintoneColumnFormat("UTC", ",", 0);
+  // Formats without memoization are immutable, so they are resolved once per timezone and separator
+  private static final Map<Pair<String, String>, KintoneColumnFormat> FORMATS =
+      new ConcurrentHashMap<>();
+  private final ZoneId zoneId;
+  private final ZoneOffset zoneOffset;
+  private final Pattern valueSeparator;
+  // Whether the offset of the zone never changes, so that it is not looked up for each value
+  private final boolean fixedOffset;
+  private final int cacheSize;
+  private TemporalCache<LocalDate> dates;
+  private TemporalCache<LocalTime> times;
+  private TemporalCache<ZonedDateTime> dateTimes;
+
+  private KintoneColumnFormat(String timezone, String valueSeparator, int cacheSize) {
+    zoneId = ZoneId.of(timezone);
+    zoneOffset = zoneId.getRules().getOffset(Instant.EPOCH);
+    this.valueSeparator = Pattern.compile(valueSeparator);
+    fixedOffset = zoneId.getRules().isFixedOffset();
+    this.cacheSize = cacheSize;
+  }
+
+  /** Returns the format without memoization, which is shared by the options alike. */
+  public static KintoneColumnFormat of(KintoneColumnOption option) {
+    return option != null
+        ? FORMATS.computeIfAbsent(
+            Pair.of(option.getTimezone(), option.getValueSeparator()),
+            key -> new KintoneColumnFormat(key.getLeft(), key.getRight(), 0))
+        : DEFAULT;
+  }
+
+  /**
+   * Returns the format memoizing up to the number of dates, times and date times each, used by a
+   * single thread.
+   */
+  public static KintoneColumnFormat of(KintoneColumnOption option, int cacheSize) {
+    return option != null
+        ? new KintoneColumnFormat(option.getTimezone(), option.getValueSeparator(), cacheSize)
+        : new KintoneColumnFormat("UTC", ",", cacheSize);
+  }
+
+  public ZoneId getZoneId() {
+    return zoneId;
+  }
+
+  /** Offset of the time zone at the epoch, used for TIME which has no date. */
+  public ZoneOffset getZoneOffset() {
+    return zoneOffset;
+  }
+
+  public Pattern getValueSeparator() {
+    return valueSeparator;
+  }
+
+  /** Date of the epoch second in the time zone. */
+  public LocalDate toLocalDate(long epochSecond) {
+    if (cacheSize == 0) {
+      return Instant.ofEpochSecond(epochSecond).atZone(zoneId).toLocalDate();
+    }
+    if (dates == null) {
+      dates = new TemporalCache<>(cacheSize);
+    }
+    // Keyed by the local day, so that values of the same day share an entry in any zone
+    long day = Math.floorDiv(epochSecond + getOffsetSeconds(epochSecond), SECONDS_PER_DAY);
+    return dates.get(day, LocalDate::ofEpochDay);
+  }
+
+  /** Time of the epoch second in the time zone. */
+  public LocalTime toLocalTime(long epochSecond) {
+    if (cacheSize == 0) {
+      return Instant.ofEpochSecond(epochSecond).atZone(zoneId).toLocalTime();
+    }
+    if (times == null) {
+      times = new TemporalCache<>(cacheSize);
+    }
+    long second = Math.floorMod(epochSecond + getOffsetSeconds(epochSecond), SECONDS_PER_DAY);
+    return times.get(second, LocalTime::ofSecondOfDay);
+  }
+
+  /** Date time of the epoch second in UTC. */
+  public ZonedDateTime toDateTime(long epochSecond) {
+    if (cacheSize == 0) {
+      return Instant.ofEpochSecond(epochSecond).atZone(ZoneOffset.UTC);
+    }
+    if (dateTimes == null) {
+      dateTimes = new TemporalCache<>(cacheSize);
+    }
+    return dateTimes.get(epochSecond, key -> Instant.ofEpochSecond(key).atZone(ZoneOffset.UTC));
+  }
+
+  private int getOffsetSeconds(long epochSecond) {
+    return fixedOffset
+        ? zoneOffset.getTotalSeconds()
+        : zoneId.getRules().getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+  }
+
+  public long getCacheHits() {
+    return hits(dates) + hits(times) + hits(dateTimes);
+  }
+
+  public long getCacheMisses() {
+    return misses(dates) + misses(times) + misses(dateTimes);
+  }
+
+  private static long hits(TemporalCache<?> cache) {
+    return cache == null ? 0 : cache.getHits();
+  }
+
+  private static long misses(TemporalCache<?> cache) {
+    return cache == null ? 0 : cache.getMisses();
+  }
+}
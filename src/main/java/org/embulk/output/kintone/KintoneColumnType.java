@@ -27,12 +27,13 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.embulk.output.kintone.deserializer.Deserializer;
 import org.embulk.spi.time.Timestamp;
@@ -51,7 +52,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public SingleLineTextFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public SingleLineTextFieldValue convert(String value, KintoneColumnFormat format) {
       return new SingleLineTextFieldValue(value);
     }
 
@@ -87,7 +88,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public MultiLineTextFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public MultiLineTextFieldValue convert(String value, KintoneColumnFormat format) {
       return new MultiLineTextFieldValue(value);
     }
 
@@ -108,7 +109,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public RichTextFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public RichTextFieldValue convert(String value, KintoneColumnFormat format) {
       return new RichTextFieldValue(value);
     }
 
@@ -129,18 +130,29 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public NumberFieldValue getFieldValue(boolean value, KintoneColumnOption option) {
-      return getFieldValue(value ? "1" : "0", option);
+    public NumberFieldValue convert(boolean value, KintoneColumnFormat format) {
+      return new NumberFieldValue(value ? BigDecimal.ONE : BigDecimal.ZERO);
     }
 
     @Override
-    public NumberFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public NumberFieldValue convert(long value, KintoneColumnFormat format) {
+      return new NumberFieldValue(BigDecimal.valueOf(value));
+    }
+
+    @Override
+    public NumberFieldValue convert(double value, KintoneColumnFormat format) {
+      // Same as the string representation of the double
+      return new NumberFieldValue(BigDecimal.valueOf(value));
+    }
+
+    @Override
+    public NumberFieldValue convert(String value, KintoneColumnFormat format) {
       return new NumberFieldValue(new BigDecimal(value.isEmpty() ? "0" : value));
     }
 
     @Override
-    public NumberFieldValue getFieldValue(Timestamp value, KintoneColumnOption option) {
-      return (NumberFieldValue) getFieldValue(value.getEpochSecond(), option);
+    public NumberFieldValue convert(Timestamp value, KintoneColumnFormat format) {
+      return convert(value.getEpochSecond(), format);
     }
 
     @Override
@@ -175,8 +187,8 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public CheckBoxFieldValue getFieldValue(String value, KintoneColumnOption option) {
-      return new CheckBoxFieldValue(asList(value, option));
+    public CheckBoxFieldValue convert(String value, KintoneColumnFormat format) {
+      return new CheckBoxFieldValue(asList(value, format));
     }
 
     @Override
@@ -198,7 +210,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public RadioButtonFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public RadioButtonFieldValue convert(String value, KintoneColumnFormat format) {
       return new RadioButtonFieldValue(value);
     }
 
@@ -219,8 +231,8 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public MultiSelectFieldValue getFieldValue(String value, KintoneColumnOption option) {
-      return new MultiSelectFieldValue(asList(value, option));
+    public MultiSelectFieldValue convert(String value, KintoneColumnFormat format) {
+      return new MultiSelectFieldValue(asList(value, format));
     }
 
     @Override
@@ -242,7 +254,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public DropDownFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public DropDownFieldValue convert(String value, KintoneColumnFormat format) {
       return new DropDownFieldValue(value);
     }
 
@@ -263,8 +275,8 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public UserSelectFieldValue getFieldValue(String value, KintoneColumnOption option) {
-      List<String> codes = asList(value, option);
+    public UserSelectFieldValue convert(String value, KintoneColumnFormat format) {
+      List<String> codes = asList(value, format);
       List<User> users = codes.stream().map(User::new).collect(Collectors.toList());
       return new UserSelectFieldValue(users);
     }
@@ -286,8 +298,8 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public OrganizationSelectFieldValue getFieldValue(String value, KintoneColumnOption option) {
-      List<String> codes = asList(value, option);
+    public OrganizationSelectFieldValue convert(String value, KintoneColumnFormat format) {
+      List<String> codes = asList(value, format);
       List<Organization> organizations =
           codes.stream().map(Organization::new).collect(Collectors.toList());
       return new OrganizationSelectFieldValue(organizations);
@@ -310,8 +322,8 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public GroupSelectFieldValue getFieldValue(String value, KintoneColumnOption option) {
-      List<String> codes = asList(value, option);
+    public GroupSelectFieldValue convert(String value, KintoneColumnFormat format) {
+      List<String> codes = asList(value, format);
       List<Group> groups = codes.stream().map(Group::new).collect(Collectors.toList());
       return new GroupSelectFieldValue(groups);
     }
@@ -333,29 +345,30 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public DateFieldValue getFieldValue(long value, KintoneColumnOption option) {
-      return getFieldValue(Timestamp.ofEpochSecond(value), option);
+    public DateFieldValue convert(long value, KintoneColumnFormat format) {
+      return new DateFieldValue(format.toLocalDate(value));
     }
 
     @Override
-    public DateFieldValue getFieldValue(double value, KintoneColumnOption option) {
-      return getFieldValue(Double.valueOf(value).longValue(), option);
+    public DateFieldValue convert(double value, KintoneColumnFormat format) {
+      return convert((long) value, format);
     }
 
     @Override
-    public DateFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public DateFieldValue convert(String value, KintoneColumnFormat format) {
       return value.isEmpty()
-          ? getFieldValue(EPOCH, option)
+          ? convert(EPOCH, format)
           : new DateFieldValue(
               LocalDate.parse(value)
                   .atStartOfDay(ZoneOffset.UTC)
-                  .withZoneSameInstant(getZoneId(option))
+                  .withZoneSameInstant(format.getZoneId())
                   .toLocalDate());
     }
 
     @Override
-    public DateFieldValue getFieldValue(Timestamp value, KintoneColumnOption option) {
-      return new DateFieldValue(value.getInstant().atZone(getZoneId(option)).toLocalDate());
+    public DateFieldValue convert(Timestamp value, KintoneColumnFormat format) {
+      // The date does not depend on the fraction of the second
+      return new DateFieldValue(format.toLocalDate(value.getEpochSecond()));
     }
 
     @Override
@@ -375,29 +388,31 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public TimeFieldValue getFieldValue(long value, KintoneColumnOption option) {
-      return getFieldValue(Timestamp.ofEpochSecond(value), option);
+    public TimeFieldValue convert(long value, KintoneColumnFormat format) {
+      return new TimeFieldValue(format.toLocalTime(value));
     }
 
     @Override
-    public TimeFieldValue getFieldValue(double value, KintoneColumnOption option) {
-      return getFieldValue(Double.valueOf(value).longValue(), option);
+    public TimeFieldValue convert(double value, KintoneColumnFormat format) {
+      return convert((long) value, format);
     }
 
     @Override
-    public TimeFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public TimeFieldValue convert(String value, KintoneColumnFormat format) {
       return value.isEmpty()
-          ? getFieldValue(EPOCH, option)
+          ? convert(EPOCH, format)
           : new TimeFieldValue(
               LocalTime.parse(value)
                   .atOffset(ZoneOffset.UTC)
-                  .withOffsetSameInstant(getZoneOffset(option))
+                  .withOffsetSameInstant(format.getZoneOffset())
                   .toLocalTime());
     }
 
     @Override
-    public TimeFieldValue getFieldValue(Timestamp value, KintoneColumnOption option) {
-      return new TimeFieldValue(value.getInstant().atZone(getZoneId(option)).toLocalTime());
+    public TimeFieldValue convert(Timestamp value, KintoneColumnFormat format) {
+      return value.getNano() == 0
+          ? convert(value.getEpochSecond(), format)
+          : new TimeFieldValue(value.getInstant().atZone(format.getZoneId()).toLocalTime());
     }
 
     @Override
@@ -417,25 +432,27 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public DateTimeFieldValue getFieldValue(long value, KintoneColumnOption option) {
-      return getFieldValue(Timestamp.ofEpochSecond(value), option);
+    public DateTimeFieldValue convert(long value, KintoneColumnFormat format) {
+      return new DateTimeFieldValue(format.toDateTime(value));
     }
 
     @Override
-    public DateTimeFieldValue getFieldValue(double value, KintoneColumnOption option) {
-      return getFieldValue(Double.valueOf(value).longValue(), option);
+    public DateTimeFieldValue convert(double value, KintoneColumnFormat format) {
+      return convert((long) value, format);
     }
 
     @Override
-    public DateTimeFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public DateTimeFieldValue convert(String value, KintoneColumnFormat format) {
       return value.isEmpty()
-          ? getFieldValue(EPOCH, option)
+          ? convert(EPOCH, format)
           : new DateTimeFieldValue(ZonedDateTime.parse(value));
     }
 
     @Override
-    public DateTimeFieldValue getFieldValue(Timestamp value, KintoneColumnOption option) {
-      return new DateTimeFieldValue(value.getInstant().atZone(ZoneOffset.UTC));
+    public DateTimeFieldValue convert(Timestamp value, KintoneColumnFormat format) {
+      return value.getNano() == 0
+          ? convert(value.getEpochSecond(), format)
+          : new DateTimeFieldValue(value.getInstant().atZone(ZoneOffset.UTC));
     }
 
     @Override
@@ -455,7 +472,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public LinkFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public LinkFieldValue convert(String value, KintoneColumnFormat format) {
       return new LinkFieldValue(value);
     }
 
@@ -476,7 +493,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public FileFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public FileFieldValue convert(String value, KintoneColumnFormat format) {
       throw new UnsupportedOperationException();
     }
 
@@ -497,7 +514,7 @@ public enum KintoneColumnType {
     }
 
     @Override
-    public SubtableFieldValue getFieldValue(String value, KintoneColumnOption option) {
+    public SubtableFieldValue convert(String value, KintoneColumnFormat format) {
       return DESERIALIZER.deserialize(value.isEmpty() ? "[]" : value, SubtableFieldValue.class);
     }
 
@@ -513,6 +530,14 @@ public enum KintoneColumnType {
   };
   private static final Deserializer DESERIALIZER = new Deserializer();
   private static final Timestamp EPOCH = Timestamp.ofInstant(Instant.EPOCH);
+  private static final Map<KintoneColumnType, List<Type>> SUPPORTED_TYPES =
+      new EnumMap<>(KintoneColumnType.class);
+
+  static {
+    for (KintoneColumnType type : values()) {
+      SUPPORTED_TYPES.put(type, type.getSupportedTypes());
+    }
+  }
 
   public static KintoneColumnType getType(
       KintoneColumnOption option, KintoneColumnType defaultType) {
@@ -522,45 +547,62 @@ public enum KintoneColumnType {
   public abstract FieldValue getFieldValue();
 
   public FieldValue getFieldValue(boolean value, KintoneColumnOption option) {
-    if (getSupportedTypes().contains(Types.BOOLEAN)) {
-      return getFieldValue(String.valueOf(value), option);
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return convert(value, KintoneColumnFormat.of(option));
   }
 
   public FieldValue getFieldValue(long value, KintoneColumnOption option) {
-    if (getSupportedTypes().contains(Types.LONG)) {
-      return getFieldValue(String.valueOf(value), option);
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return convert(value, KintoneColumnFormat.of(option));
   }
 
   public FieldValue getFieldValue(double value, KintoneColumnOption option) {
-    if (getSupportedTypes().contains(Types.DOUBLE)) {
-      return getFieldValue(String.valueOf(value), option);
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return convert(value, KintoneColumnFormat.of(option));
   }
 
-  public abstract FieldValue getFieldValue(String value, KintoneColumnOption option);
+  public FieldValue getFieldValue(String value, KintoneColumnOption option) {
+    return convert(value, KintoneColumnFormat.of(option));
+  }
 
   public FieldValue getFieldValue(Timestamp value, KintoneColumnOption option) {
-    if (getSupportedTypes().contains(Types.TIMESTAMP)) {
-      return getFieldValue(value.getInstant().toString(), option);
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return convert(value, KintoneColumnFormat.of(option));
   }
 
   public FieldValue getFieldValue(Value value, KintoneColumnOption option) {
-    if (getSupportedTypes().contains(Types.JSON)) {
-      return getFieldValue(value.toJson(), option);
-    } else {
-      throw new UnsupportedOperationException();
-    }
+    return convert(value, KintoneColumnFormat.of(option));
+  }
+
+  /** Whether values of the Embulk type are converted, other than strings which always are. */
+  public boolean supports(Type type) {
+    return SUPPORTED_TYPES.get(this).contains(type);
+  }
+
+  // Conversions with the format resolved once per column. Types override those of the Embulk
+  // types they convert directly, and the others go through the string representation.
+
+  public FieldValue convert(boolean value, KintoneColumnFormat format) {
+    checkSupported(Types.BOOLEAN);
+    return convert(String.valueOf(value), format);
+  }
+
+  public FieldValue convert(long value, KintoneColumnFormat format) {
+    checkSupported(Types.LONG);
+    return convert(String.valueOf(value), format);
+  }
+
+  public FieldValue convert(double value, KintoneColumnFormat format) {
+    checkSupported(Types.DOUBLE);
+    return convert(String.valueOf(value), format);
+  }
+
+  public abstract FieldValue convert(String value, KintoneColumnFormat format);
+
+  public FieldValue convert(Timestamp value, KintoneColumnFormat format) {
+    checkSupported(Types.TIMESTAMP);
+    return convert(value.getInstant().toString(), format);
+  }
+
+  public FieldValue convert(Value value, KintoneColumnFormat format) {
+    checkSupported(Types.JSON);
+    return convert(value.toJson(), format);
   }
 
   public Object getValue(Record Record, String fieldCode) {
@@ -579,21 +621,15 @@ public enum KintoneColumnType {
 
   protected abstract List<Type> getSupportedTypes();
 
-  private static List<String> asList(String value, KintoneColumnOption option) {
-    return value.isEmpty()
-        ? Collections.emptyList()
-        : Arrays.asList(value.split(getValueSeparator(option), 0));
-  }
-
-  private static ZoneOffset getZoneOffset(KintoneColumnOption option) {
-    return getZoneId(option).getRules().getOffset(Instant.EPOCH);
-  }
-
-  private static ZoneId getZoneId(KintoneColumnOption option) {
-    return ZoneId.of(option != null ? option.getTimezone() : "UTC");
+  private void checkSupported(Type type) {
+    if (!supports(type)) {
+      throw new UnsupportedOperationException();
+    }
   }
 
-  private static String getValueSeparator(KintoneColumnOption option) {
-    return option != null ? option.getValueSeparator() : ",";
+  private static List<String> asList(String value, KintoneColumnFormat format) {
+    return value.isEmpty()
+        ? Collections.emptyList()
+        : Arrays.asList(format.getValueSeparator().split(value, 0));
   }
 }
@@ -0,0 +1,98 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kintone.client.model.record.FieldType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Types of the fields of a form, including the fields of subtables, kept in a file across jobs.
+ *
+ * <p>The file is keyed by the domain, the app and the guest space, and holds the revision of the
+ * app the types were fetched at, so that the form is fetched again only once the app is changed.
+ * Files which cannot be read or written are ignored, the same as if the form were not cached.
+ */
+public class KintoneFormCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KintoneFormCache.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final Path file;
+
+  public KintoneFormCache(Path directory, String domain, long app, Integer guestSpaceId) {
+    String name =
+        String.format(
+            "%s-%d-%s.json",
+            domain.replaceAll("[^A-Za-z0-9.-]", "_"),
+            app,
+            guestSpaceId == null ? "" : guestSpaceId);
+    file = directory.resolve(name);
+  }
+
+  /**
+   * Returns the cached types if they were fetched at the revision, otherwise fetches and caches
+   * them.
+   */
+  public Map<String, FieldType> get(long revision, Supplier<Map<String, FieldType>> fetch) {
+    Map<String, FieldType> fieldTypes = read(revision);
+    if (fieldTypes != null) {
+      return fieldTypes;
+    }
+    fieldTypes = fetch.get();
+    write(revision, fieldTypes);
+    return fieldTypes;
+  }
+
+  private Map<String, FieldType> read(long revision) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      Entry entry = MAPPER.readValue(file.toFile(), Entry.class);
+      if (entry.revision != revision) {
+        LOGGER.info("Form of revision {} is fetched again, cached at {}", revision, entry.revision);
+        return null;
+      }
+      return entry.fields;
+    } catch (IOException e) {
+      LOGGER.warn("Form cache {} is not read", file, e);
+      return null;
+    }
+  }
+
+  private void write(long revision, Map<String, FieldType> fieldTypes) {
+    Entry entry = new Entry();
+    entry.revision = revision;
+    entry.fields = fieldTypes;
+    Path temp = null;
+    try {
+      Files.createDirectories(file.getParent());
+      // Written aside and moved, so that concurrent jobs never read a partial file
+      temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      MAPPER.writeValue(temp.toFile(), entry);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.warn("Form cache {} is not written", file, e);
+      deleteQuietly(temp);
+    }
+  }
+
+  private static void deleteQuietly(Path temp) {
+    try {
+      if (temp != null) {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Temporary form cache {} is not deleted", temp, e);
+    }
+  }
+
+  static class Entry {
+    public long revision;
+    public Map<String, FieldType> fields;
+  }
+}
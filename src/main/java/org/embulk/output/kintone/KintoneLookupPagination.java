@@ -0,0 +1,16 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/** How the queries looking up existing records are read page by page. */
+public enum KintoneLookupPagination {
+  /** Reads with a cursor, switching to {@link #SEEK} when the domain has too many cursors. */
+  CURSOR,
+  /** Reads pages ordered by {@code $id}, each starting after the last id of the previous one. */
+  SEEK;
+
+  @JsonCreator
+  public static KintoneLookupPagination of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+}
@@ -1,5 +1,6 @@
 package org.embulk.output.kintone;
 
+import com.kintone.client.model.record.FieldType;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -8,6 +9,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskReport;
@@ -35,6 +37,8 @@ public class KintoneOutputPlugin implements OutputPlugin {
       ConfigSource config, Schema schema, int taskCount, OutputPlugin.Control control) {
     PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
     task.setDerivedColumns(Collections.emptySet());
+    // Tasks start writing with the field types in the task, without fetching the form
+    task.setFieldTypes(getFieldTypes(task, schema));
     List<TaskReport> taskReports = control.run(task.dump());
     return task.getReduceKeyName().isPresent()
         ? new Reducer(task, schema)
@@ -61,10 +65,15 @@ public class KintoneOutputPlugin implements OutputPlugin {
   public TransactionalPageOutput open(TaskSource taskSource, Schema schema, int taskIndex) {
     PluginTask task = TASK_MAPPER.map(taskSource, PluginTask.class);
     return task.getReduceKeyName().isPresent()
-        ? new ReducedPageOutput(schema, taskIndex)
+        ? new ReducedPageOutput(task, schema, taskIndex)
         : new KintonePageOutput(task, schema, taskIndex);
   }
 
+  /** Fetches the form and validates the task against it once for all tasks. */
+  protected Map<String, FieldType> getFieldTypes(PluginTask task, Schema schema) {
+    return KintoneClient.getFieldTypes(task, schema);
+  }
+
   private void concatenateErrorFiles(String outputFile) {
     Path outputPath = Paths.get(outputFile);
     Path directory = outputPath.getParent();
@@ -4,8 +4,11 @@ import static org.embulk.util.retryhelper.RetryExecutor.retryExecutor;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Maps;
-import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import com.kintone.client.api.common.BulkRequestsRequest;
+import com.kintone.client.api.common.BulkRequestsResponseBody;
+import com.kintone.client.api.record.AddRecordsResponseBody;
+import com.kintone.client.api.record.GetRecordsRequest;
+import com.kintone.client.api.record.GetRecordsResponseBody;
 import com.kintone.client.exception.KintoneApiRuntimeException;
 import com.kintone.client.model.record.CheckBoxFieldValue;
 import com.kintone.client.model.record.DateFieldValue;
@@ -28,22 +31,45 @@ import com.kintone.client.model.record.UserSelectFieldValue;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
 import org.embulk.config.TaskReport;
+import org.embulk.output.kintone.dispatcher.AdaptiveController;
+import org.embulk.output.kintone.dispatcher.Chunk;
+import org.embulk.output.kintone.dispatcher.Dispatcher;
+import org.embulk.output.kintone.dispatcher.RequestWindow;
+import org.embulk.output.kintone.encoder.EncodedRecords;
+import org.embulk.output.kintone.lookup.CursorManager;
+import org.embulk.output.kintone.lookup.ExistenceIndex;
+import org.embulk.output.kintone.lookup.IdRange;
+import org.embulk.output.kintone.lookup.KeyIdCache;
+import org.embulk.output.kintone.lookup.LookupPlan;
+import org.embulk.output.kintone.lookup.LookupPlanner;
+import org.embulk.output.kintone.lookup.SharedSnapshot;
 import org.embulk.output.kintone.record.Id;
 import org.embulk.output.kintone.record.IdOrUpdateKey;
 import org.embulk.output.kintone.record.Skip;
+import org.embulk.output.kintone.util.EagerLazy;
 import org.embulk.output.kintone.util.Lazy;
 import org.embulk.spi.Exec;
 import org.embulk.spi.Page;
@@ -67,13 +93,52 @@ public class KintonePageOutput implements TransactionalPageOutput {
           "GAIA_DA02" // Changes could not be saved due to database lock failure. Please try again
           // after some time.
           );
+  private static final List<String> LOCK_ERROR_CODES = Arrays.asList("GAIA_RE18", "GAIA_DA02");
+  private static final String TOO_MANY_CURSORS_ERROR_CODE = "GAIA_TM12";
+  private static final List<Integer> THROTTLING_STATUS_CODES = Arrays.asList(429, 503);
   private static final int UPSERT_BATCH_SIZE = 10000;
+  private static final int GET_RECORDS_LIMIT = 500;
+  // The snapshot is chosen automatically if the app has at most this many records per input record
+  private static final int SNAPSHOT_RATIO = 4;
+  private static final int BULK_REQUEST_SIZE = 20;
   private final Map<String, Pair<FieldType, FieldType>> wrongTypeFields = new TreeMap<>();
   private final PluginTask task;
   private final PageReader reader;
   private final Lazy<KintoneClient> client;
+  private final Lazy<Dispatcher> dispatcher;
   private final ErrorFileLogger errorFileLogger;
+  private final RequestWindow window;
+  private final RequestWindow lookups;
+  private final CursorManager cursors;
+  private final AdaptiveController controller;
   private final int taskIndex;
+  private List<Record> insertRecords = new ArrayList<>();
+  private List<RecordForUpdate> updateRecords = new ArrayList<>();
+  private List<Record> upsertRecords = new ArrayList<>();
+  private List<IdOrUpdateKey> upsertIdOrUpdateKeys = new ArrayList<>();
+  private List<RecordForUpdate> nativeUpsertRecords = new ArrayList<>();
+  private List<Chunk> bulkChunks = new ArrayList<>();
+  private boolean directEncoding;
+  private EncodedRecords encodedRecords;
+  // Bodies already sent, whose buffers are reused
+  private final Deque<EncodedRecords> sentEncodedRecords = new ArrayDeque<>();
+  private long insertedRecords;
+  private long updatedRecords;
+  private long upsertedRecords;
+  private final LongAdder requestWaitNanos = new LongAdder();
+  private final LongAdder lookupNanos = new LongAdder();
+  private final SharedSnapshot sharedSnapshot;
+  private volatile ExistenceIndex snapshot;
+  private boolean snapshotChecked;
+  private volatile boolean seekLookups;
+  private final Lazy<KeyIdCache> keyIdCache;
+  private KintoneWritePlan writePlan;
+  private long keyCacheHits;
+  private final ExecutorService prefetcher;
+  private final Deque<PendingUpsert> pendingUpserts = new ArrayDeque<>();
+  private final Deque<InsertedKeys> recentlyInsertedKeys = new ArrayDeque<>();
+  private long lookupSequence;
+  private boolean finishing;
 
   public KintonePageOutput(PluginTask task, Schema schema) {
     this(task, schema, 0);
@@ -83,7 +148,75 @@ public class KintonePageOutput implements TransactionalPageOutput {
     this.task = task;
     this.taskIndex = taskIndex;
     reader = new PageReader(schema);
-    client = KintoneClient.lazy(() -> task, schema);
+    Lazy<KintoneClient> lazyClient;
+    if (task.getSharedDispatcher()) {
+      Lazy<KintoneClient> sharedClient = KintoneClient.lazy(() -> task, schema);
+      dispatcher =
+          new Lazy<Dispatcher>() {
+            @Override
+            protected Dispatcher initialValue() {
+              return Dispatcher.acquire(task, sharedClient::get);
+            }
+          };
+      lazyClient =
+          new Lazy<KintoneClient>() {
+            @Override
+            protected KintoneClient initialValue() {
+              return dispatcher.get().client();
+            }
+          };
+    } else {
+      dispatcher = null;
+      lazyClient = KintoneClient.lazy(() -> task, schema);
+    }
+    // Created and connected while the input plugin decodes the first page
+    client =
+        task.getClientWarmUp()
+            ? new EagerLazy<>(
+                () -> {
+                  KintoneClient value = lazyClient.get();
+                  value.warmUp();
+                  return value;
+                },
+                "embulk-output-kintone-warm-up")
+            : lazyClient;
+    window = new RequestWindow(task.getMaxInFlightRequests());
+    lookups = new RequestWindow(task.getMaxLookupConcurrency());
+    cursors =
+        new CursorManager(
+            task.getDomain(), task.getMaxOpenCursors(), task.getCursorFetchSize().orElse(null));
+    seekLookups = task.getLookupPagination() == KintoneLookupPagination.SEEK;
+    keyIdCache = newKeyIdCache();
+    // Acquired here to be released by close, though the snapshot is looked up by the prefetcher
+    sharedSnapshot =
+        KintoneMode.of(task) == KintoneMode.UPSERT
+                && task.getUpsertLookup() != KintoneUpsertLookup.WINDOW
+            ? SharedSnapshot.acquire(
+                task.getDomain(),
+                task.getGuestSpaceId().orElse(null),
+                task.getAppId(),
+                task.getUpdateKeyName().orElse(Id.FIELD))
+            : null;
+    directEncoding =
+        task.getDirectEncoding()
+            && KintoneMode.of(task) == KintoneMode.INSERT
+            && !task.getBulkRequest()
+            && dispatcher == null;
+    if (task.getDirectEncoding() && !directEncoding) {
+      LOGGER.warn(
+          "direct_encoding is ignored, since it is only used in insert mode"
+              + " without bulk_request and shared_dispatcher");
+    }
+    // Lookups of the following windows run one by one on a thread of their own
+    prefetcher =
+        task.getMaxOutstandingLookups() > 1
+            ? Executors.newSingleThreadExecutor(KintonePageOutput::newPrefetcherThread)
+            : null;
+    // With the shared dispatcher, the controller of the dispatcher is used instead
+    controller =
+        task.getAdaptiveConcurrency() && dispatcher == null
+            ? new AdaptiveController(task.getMaxInFlightRequests())
+            : null;
 
     // Initialize error file logger
     this.errorFileLogger =
@@ -97,11 +230,50 @@ public class KintonePageOutput implements TransactionalPageOutput {
 
   @Override
   public void finish() {
-    // noop
+    // Records are accumulated across pages, so flush what is left at the end of the task
+    finishing = true;
+    if (!upsertRecords.isEmpty()) {
+      flushUpsertRecords();
+    }
+    while (!pendingUpserts.isEmpty()) {
+      upsertOldest();
+    }
+    if (!nativeUpsertRecords.isEmpty()) {
+      flushNativeUpsertRecords();
+    }
+    if (!insertRecords.isEmpty()) {
+      flushInsertRecords();
+    }
+    if (encodedRecords != null && encodedRecords.size() > 0) {
+      flushEncodedRecords();
+    }
+    if (!updateRecords.isEmpty()) {
+      flushUpdateRecords();
+    }
+    if (!bulkChunks.isEmpty()) {
+      flushBulkChunks();
+    }
+    window.drain();
   }
 
   @Override
   public void close() {
+    if (prefetcher != null) {
+      prefetcher.shutdownNow();
+    }
+    window.close();
+    lookups.close();
+    if (sharedSnapshot != null) {
+      sharedSnapshot.close();
+    }
+    if (keyIdCache != null) {
+      try {
+        keyIdCache.close();
+      } catch (Exception e) {
+        LOGGER.warn("Failed to close key cache", e);
+      }
+    }
+
     // Close error file logger
     if (errorFileLogger != null) {
       try {
@@ -111,7 +283,24 @@ public class KintonePageOutput implements TransactionalPageOutput {
       }
     }
 
-    client.get().close();
+    try {
+      // Waits for the client being warmed up, so that it is not created after being closed
+      client.get();
+    } catch (RuntimeException e) {
+      // Failed while warming up, which the requests already failed with
+      LOGGER.warn("Failed to create the client", e);
+    } finally {
+      try {
+        if (dispatcher != null) {
+          // The client is shared, so it is closed when the last task releases the dispatcher
+          dispatcher.close();
+        } else {
+          client.close();
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Failed to close the client", e);
+      }
+    }
   }
 
   @Override
@@ -121,28 +310,341 @@ public class KintonePageOutput implements TransactionalPageOutput {
 
   @Override
   public TaskReport commit() {
+    window.drain();
+    AdaptiveController controller = controller();
+    if (controller != null) {
+      LOGGER.info(
+          String.format(
+              "Adaptive concurrency is %d and chunk size is %d",
+              controller.getConcurrency(), controller.getChunkSize(task.getChunkSize(), 0)));
+    }
+    if (writePlan != null) {
+      long hits = writePlan.getTemporalCacheHits();
+      long lookups = hits + writePlan.getTemporalCacheMisses();
+      if (lookups > 0) {
+        LOGGER.info(
+            String.format(
+                "Converted %d dates and times with %.1f%% cache hits",
+                lookups, 100.0 * hits / lookups));
+      }
+    }
     wrongTypeFields.forEach(
         (key, value) ->
             LOGGER.warn(
                 String.format(
                     "Field type of %s is expected %s but actual %s",
                     key, value.getLeft(), value.getRight())));
-    return Exec.newTaskReport();
+    return Exec.newTaskReport()
+        .set("inserted_records", insertedRecords)
+        .set("updated_records", updatedRecords)
+        .set("upserted_records", upsertedRecords)
+        .set("request_wait_millis", TimeUnit.NANOSECONDS.toMillis(requestWaitNanos.sum()))
+        .set("lookup_millis", TimeUnit.NANOSECONDS.toMillis(lookupNanos.sum()))
+        .set("cursors", cursors.getOpenedCursors())
+        .set("cursor_wait_millis", TimeUnit.NANOSECONDS.toMillis(cursors.getWaitNanos()))
+        .set("key_cache_hits", keyCacheHits)
+        .set("temporal_cache_hits", writePlan != null ? writePlan.getTemporalCacheHits() : 0)
+        .set("temporal_cache_misses", writePlan != null ? writePlan.getTemporalCacheMisses() : 0);
   }
 
   private void insert(List<Record> records) {
-    executeWithRetry(() -> client.get().record().addRecords(task.getAppId(), records), records);
+    dispatch(Chunk.insert(records));
   }
 
   private void update(List<RecordForUpdate> records) {
-    executeWithRetry(() -> client.get().record().updateRecords(task.getAppId(), records), records);
+    dispatch(Chunk.update(records));
+  }
+
+  private void nativeUpsert(List<RecordForUpdate> records) {
+    dispatch(Chunk.upsert(records));
+  }
+
+  private void dispatch(Chunk chunk) {
+    // Only the chunks left at the end of the task are merged, since chunks flushed before may be
+    // partial when the adaptive chunk size is smaller than chunk_size
+    if (dispatcher != null && finishing && chunk.size() < task.getChunkSize()) {
+      merge(chunk);
+      return;
+    }
+    if (!task.getBulkRequest()) {
+      send(Collections.singletonList(chunk));
+      return;
+    }
+    bulkChunks.add(chunk);
+    if (bulkChunks.size() == BULK_REQUEST_SIZE) {
+      flushBulkChunks();
+    }
+  }
+
+  private void flushBulkChunks() {
+    List<Chunk> chunks = bulkChunks;
+    bulkChunks = new ArrayList<>();
+    send(chunks);
+  }
+
+  private void merge(Chunk chunk) {
+    // The sender runs on the dispatcher thread, so resolve what it needs on the task thread
+    KintoneClient client = this.client.get();
+    Dispatcher dispatcher = this.dispatcher.get();
+    Dispatcher.Sender sender =
+        (merged, onError) ->
+            executeWithRetry(
+                controlled(
+                    dispatcher,
+                    () -> {
+                      merged.execute(client.transport(), task.getAppId());
+                      return null;
+                    }),
+                onError);
+    CompletableFuture<Dispatcher.Merged> future = dispatcher.merge(chunk, sender);
+    window.submit(
+        () -> {
+          Dispatcher.Merged merged = future.get();
+          return () -> {
+            if (errorFileLogger != null) {
+              merged
+                  .getErrors()
+                  .forEach(e -> logApiError(e, chunk.getRecords(), merged.getOffset()));
+            }
+            if (merged.getFailure() != null) {
+              throw merged.getFailure();
+            }
+            count(chunk);
+            addToSnapshot(chunk);
+          };
+        });
+  }
+
+  private <T> Supplier<T> limited(Supplier<T> operation) {
+    if (dispatcher == null) {
+      return operation;
+    }
+    Dispatcher dispatcher = this.dispatcher.get();
+    return () -> dispatcher.call(operation, requestWaitNanos::add);
+  }
+
+  /** Limits a write request, adapting the concurrency to the responses if enabled */
+  private <T> Supplier<T> controlled(Supplier<T> operation) {
+    return controlled(dispatcher == null ? null : dispatcher.get(), operation);
+  }
+
+  private <T> Supplier<T> controlled(Dispatcher dispatcher, Supplier<T> operation) {
+    Supplier<T> limited =
+        dispatcher == null ? operation : () -> dispatcher.call(operation, requestWaitNanos::add);
+    AdaptiveController controller = dispatcher == null ? this.controller : dispatcher.controller();
+    return controller == null ? limited : () -> controller.call(limited, this::isCongestion);
+  }
+
+  private boolean isTooManyCursors(KintoneApiRuntimeException e) {
+    try {
+      ObjectMapper mapper = new ObjectMapper();
+      return getErrorCodes(mapper.readTree(e.getContent())).contains(TOO_MANY_CURSORS_ERROR_CODE);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  private boolean isCongestion(RuntimeException exception) {
+    if (!(exception instanceof KintoneApiRuntimeException)) {
+      return false;
+    }
+    KintoneApiRuntimeException e = (KintoneApiRuntimeException) exception;
+    if (THROTTLING_STATUS_CODES.contains(e.getStatusCode())) {
+      return true;
+    }
+    try {
+      ObjectMapper mapper = new ObjectMapper();
+      return getErrorCodes(mapper.readTree(e.getContent())).stream()
+          .anyMatch(LOCK_ERROR_CODES::contains);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  private AdaptiveController controller() {
+    return dispatcher == null ? controller : dispatcher.get().controller();
+  }
+
+  private boolean isFull(List<?> records) {
+    // The fields of the plan bound those of each record, so they are not counted per record
+    return isFull(records.size(), writePlan.getFieldCount());
+  }
+
+  private boolean isFull(int size, int fieldCount) {
+    AdaptiveController controller = controller();
+    if (controller == null) {
+      return size >= task.getChunkSize();
+    }
+    return size >= controller.getChunkSize(task.getChunkSize(), fieldCount);
+  }
+
+  private void send(List<Chunk> chunks) {
+    // The client is not thread-safe to initialize, so resolve it on the task thread
+    KintoneClient client = this.client.get();
+    Supplier<Object> operation;
+    Consumer<KintoneApiRuntimeException> onError;
+    if (chunks.size() == 1) {
+      Chunk chunk = chunks.get(0);
+      operation = () -> chunk.execute(client.transport(), task.getAppId());
+      onError = e -> logApiError(e, chunk.getRecords());
+    } else {
+      BulkRequestsRequest request = new BulkRequestsRequest();
+      chunks.forEach(chunk -> chunk.register(request, task.getAppId()));
+      operation = () -> client.transport().bulkRequests(request);
+      onError = e -> logBulkApiError(e, chunks);
+    }
+    Supplier<Object> limitedOperation = controlled(operation);
+    window.submit(
+        () -> {
+          // Errors are logged on the task thread when the request completes, in submission order
+          List<KintoneApiRuntimeException> errors = new ArrayList<>();
+          Object result = null;
+          RuntimeException failure = null;
+          try {
+            result = executeWithRetry(limitedOperation, errors::add);
+          } catch (RuntimeException e) {
+            failure = e;
+          }
+          Object response = result;
+          RuntimeException exception = failure;
+          return () -> {
+            if (errorFileLogger != null) {
+              errors.forEach(onError);
+            }
+            if (exception != null) {
+              throw exception;
+            }
+            chunks.forEach(this::count);
+            chunks.forEach(this::addToSnapshot);
+            if (keyIdCache != null) {
+              cacheInsertedIds(chunks, response);
+            }
+          };
+        });
+  }
+
+  private void sendEncoded(EncodedRecords records) {
+    KintoneClient client = this.client.get();
+    Supplier<List<Long>> operation = controlled(() -> client.addRecords(records));
+    window.submit(
+        () -> {
+          List<KintoneApiRuntimeException> errors = new ArrayList<>();
+          RuntimeException failure = null;
+          try {
+            executeWithRetry(operation, errors::add);
+          } catch (RuntimeException e) {
+            failure = e;
+          }
+          RuntimeException exception = failure;
+          return () -> {
+            if (errorFileLogger != null && !errors.isEmpty()) {
+              // Records are decoded from the body only when they are logged
+              List<Map<String, Object>> decoded = records.decode();
+              errors.forEach(e -> logApiError(e, decoded));
+            }
+            if (exception != null) {
+              throw exception;
+            }
+            insertedRecords += records.size();
+            records.reset();
+            sentEncodedRecords.push(records);
+          };
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void cacheInsertedIds(List<Chunk> chunks, Object response) {
+    if (response instanceof BulkRequestsResponseBody) {
+      List<?> results = ((BulkRequestsResponseBody) response).getResults();
+      for (int i = 0; i < chunks.size() && i < results.size(); i++) {
+        if (results.get(i) instanceof AddRecordsResponseBody) {
+          cacheInsertedIds(chunks.get(i), ((AddRecordsResponseBody) results.get(i)).getIds());
+        }
+      }
+    } else if (response instanceof List) {
+      cacheInsertedIds(chunks.get(0), (List<Long>) response);
+    }
+  }
+
+  private void cacheInsertedIds(Chunk chunk, List<Long> ids) {
+    // The ids are in the order of the records
+    if (chunk.getType() != Chunk.Type.INSERT || ids == null || ids.size() != chunk.size()) {
+      return;
+    }
+    String fieldCode = getUpdateKeyFieldCode(task.getUpdateKeyName().get());
+    Function<Record, Object> toValue = getUpdateKeyValue(fieldCode);
+    for (int i = 0; i < ids.size(); i++) {
+      Object value = toValue.apply((Record) chunk.getRecords().get(i));
+      if (value != null && ids.get(i) != null) {
+        keyIdCache.get().put(value, ids.get(i));
+      }
+    }
+  }
+
+  /**
+   * Adds the keys of the records inserted by the chunk to the snapshot, which the following windows
+   * and the other tasks do not look up again. Added only once inserted, so that records whose
+   * inserts failed or are still in flight are not updated by their keys.
+   */
+  private void addToSnapshot(Chunk chunk) {
+    String columnName = task.getUpdateKeyName().orElse(Id.FIELD);
+    if (snapshot == null || chunk.getType() != Chunk.Type.INSERT || columnName.equals(Id.FIELD)) {
+      return;
+    }
+    Function<Record, Object> toValue = getUpdateKeyValue(getUpdateKeyFieldCode(columnName));
+    for (Object record : chunk.getRecords()) {
+      Object value = toValue.apply((Record) record);
+      if (value != null) {
+        snapshot.add(value);
+      }
+    }
+  }
+
+  private Lazy<KeyIdCache> newKeyIdCache() {
+    boolean upsert = KintoneMode.of(task) == KintoneMode.UPSERT;
+    String columnName = task.getUpdateKeyName().orElse(Id.FIELD);
+    if (task.getKeyCacheSize() <= 0 || !upsert || columnName.equals(Id.FIELD)) {
+      return null;
+    }
+    return new Lazy<KeyIdCache>() {
+      @Override
+      protected KeyIdCache initialValue() {
+        String fieldCode = getUpdateKeyFieldCode(columnName);
+        return new KeyIdCache(
+            getFieldType(fieldCode) == FieldType.NUMBER,
+            task.getKeyCacheSize(),
+            task.getKeyCacheSpill() ? spillDirectory() : null);
+      }
+    };
+  }
+
+  /** Returns the directory of temporary files, the same as that of sorting */
+  private Path spillDirectory() {
+    return Paths.get(task.getSortTmpDir().orElseGet(() -> System.getProperty("java.io.tmpdir")));
+  }
+
+  private void count(Chunk chunk) {
+    switch (chunk.getType()) {
+      case INSERT:
+        insertedRecords += chunk.size();
+        break;
+      case UPDATE:
+        updatedRecords += chunk.size();
+        break;
+      case UPSERT:
+        upsertedRecords += chunk.size();
+        break;
+      default:
+        throw new IllegalStateException("Unknown chunk type " + chunk.getType());
+    }
   }
 
   private <T> T executeWithRetry(Supplier<T> operation) {
     return executeWithRetry(operation, null);
   }
 
-  private <T> T executeWithRetry(Supplier<T> operation, List<?> records) {
+  private <T> T executeWithRetry(
+      Supplier<T> operation, Consumer<KintoneApiRuntimeException> onError) {
     KintoneRetryOption retryOption = task.getRetryOptions();
     try {
       return retryExecutor()
@@ -157,8 +659,8 @@ public class KintonePageOutput implements TransactionalPageOutput {
                     return operation.get();
                   } catch (KintoneApiRuntimeException e) {
                     // Log error details
-                    if (errorFileLogger != null && records != null) {
-                      logApiError(e, records);
+                    if (errorFileLogger != null && onError != null) {
+                      onError.accept(e);
                     }
                     throw e;
                   }
@@ -173,8 +675,8 @@ public class KintonePageOutput implements TransactionalPageOutput {
                     ObjectMapper mapper = new ObjectMapper();
                     JsonNode content =
                         mapper.readTree(((KintoneApiRuntimeException) exception).getContent());
-                    String code = content.get("code").textValue();
-                    return RETRYABLE_ERROR_CODES.contains(code);
+                    return getErrorCodes(content).stream()
+                        .anyMatch(RETRYABLE_ERROR_CODES::contains);
                   } catch (IOException e) {
                     throw new RuntimeException(e);
                   }
@@ -202,123 +704,301 @@ public class KintonePageOutput implements TransactionalPageOutput {
     }
   }
 
+  private KintoneWritePlan writePlan() {
+    if (writePlan == null) {
+      // Built at the first page, since the types of fields without options need the client
+      String updateKeyName =
+          KintoneMode.of(task) == KintoneMode.INSERT
+              ? null
+              : task.getUpdateKeyName().orElse(Id.FIELD);
+      writePlan =
+          new KintoneWritePlan(
+              client,
+              reader.getSchema(),
+              task.getColumnOptions(),
+              task.getPreferNulls(),
+              task.getIgnoreNulls(),
+              task.getReduceKeyName().orElse(null),
+              updateKeyName);
+      // The types written only depend on the plan, so they are checked once per task
+      wrongTypeFields.putAll(writePlan.getWrongTypeFields(client.get()));
+      if (directEncoding && !writePlan.supportsEncoding()) {
+        LOGGER.warn("direct_encoding is ignored, since files and subtables are not encoded");
+        directEncoding = false;
+      }
+    }
+    return writePlan;
+  }
+
   public void insertPage(Page page) {
-    List<Record> records = new ArrayList<>();
     reader.setPage(page);
-    KintoneColumnVisitor visitor =
-        new KintoneColumnVisitor(
-            client,
-            reader,
-            task.getDerivedColumns(),
-            task.getColumnOptions(),
-            task.getPreferNulls(),
-            task.getIgnoreNulls(),
-            task.getReduceKeyName().orElse(null));
+    KintoneWritePlan plan = writePlan();
+    if (directEncoding) {
+      encodeInsertPage(plan);
+      return;
+    }
     while (reader.nextRecord()) {
       Record record = new Record();
-      visitor.setRecord(record);
-      reader.getSchema().visitColumns(visitor);
-      putWrongTypeFields(record);
-      records.add(record);
-      if (records.size() == task.getChunkSize()) {
-        insert(records);
-        records.clear();
+      plan.write(reader, record, null);
+      insertRecords.add(record);
+      if (isFull(insertRecords)) {
+        flushInsertRecords();
       }
     }
-    if (!records.isEmpty()) {
-      insert(records);
+  }
+
+  private void encodeInsertPage(KintoneWritePlan plan) {
+    while (reader.nextRecord()) {
+      if (encodedRecords == null) {
+        encodedRecords =
+            sentEncodedRecords.isEmpty()
+                ? new EncodedRecords(task.getAppId())
+                : sentEncodedRecords.pop();
+      }
+      encodedRecords.add(plan, reader);
+      if (isFull(encodedRecords.size(), plan.getFieldCount())) {
+        flushEncodedRecords();
+      }
     }
   }
 
   public void updatePage(Page page) {
     Skip skip = task.getSkipIfNonExistingIdOrUpdateKey();
-    List<RecordForUpdate> records = new ArrayList<>();
     reader.setPage(page);
-    KintoneColumnVisitor visitor =
-        new KintoneColumnVisitor(
-            client,
-            reader,
-            task.getDerivedColumns(),
-            task.getColumnOptions(),
-            task.getPreferNulls(),
-            task.getIgnoreNulls(),
-            task.getReduceKeyName().orElse(null),
-            task.getUpdateKeyName().orElse(Id.FIELD));
+    KintoneWritePlan plan = writePlan();
     while (reader.nextRecord()) {
       Record record = new Record();
       IdOrUpdateKey idOrUpdateKey = new IdOrUpdateKey();
-      visitor.setRecord(record);
-      visitor.setIdOrUpdateKey(idOrUpdateKey);
-      reader.getSchema().visitColumns(visitor);
-      putWrongTypeFields(record);
+      plan.write(reader, record, idOrUpdateKey);
       if (skip == Skip.NEVER && !idOrUpdateKey.isPresent()) {
         throw new RuntimeException("No id or update key value was specified");
       } else if (!idOrUpdateKey.isPresent()) {
         LOGGER.warn("Record skipped because no id or update key value was specified");
         continue;
       }
-      records.add(idOrUpdateKey.forUpdate(record));
-      if (records.size() == task.getChunkSize()) {
-        update(records);
-        records.clear();
+      updateRecords.add(idOrUpdateKey.forUpdate(record));
+      if (isFull(updateRecords)) {
+        flushUpdateRecords();
       }
     }
-    if (!records.isEmpty()) {
-      update(records);
-    }
   }
 
   public void upsertPage(Page page) {
-    List<Record> records = new ArrayList<>();
-    List<IdOrUpdateKey> idOrUpdateKeys = new ArrayList<>();
+    if (task.getUpsertStrategy().isNative(task)) {
+      nativeUpsertPage(page);
+      return;
+    }
     reader.setPage(page);
-    KintoneColumnVisitor visitor =
-        new KintoneColumnVisitor(
-            client,
-            reader,
-            task.getDerivedColumns(),
-            task.getColumnOptions(),
-            task.getPreferNulls(),
-            task.getIgnoreNulls(),
-            task.getReduceKeyName().orElse(null),
-            task.getUpdateKeyName().orElse(Id.FIELD));
+    KintoneWritePlan plan = writePlan();
     while (reader.nextRecord()) {
       Record record = new Record();
       IdOrUpdateKey idOrUpdateKey = new IdOrUpdateKey();
-      visitor.setRecord(record);
-      visitor.setIdOrUpdateKey(idOrUpdateKey);
-      reader.getSchema().visitColumns(visitor);
-      putWrongTypeFields(record);
-      records.add(record);
-      idOrUpdateKeys.add(idOrUpdateKey);
-      if (records.size() == UPSERT_BATCH_SIZE) {
-        upsert(records, idOrUpdateKeys);
-        records.clear();
-        idOrUpdateKeys.clear();
+      plan.write(reader, record, idOrUpdateKey);
+      upsertRecords.add(record);
+      upsertIdOrUpdateKeys.add(idOrUpdateKey);
+      if (upsertRecords.size() == UPSERT_BATCH_SIZE) {
+        flushUpsertRecords();
       }
     }
-    if (!records.isEmpty()) {
-      upsert(records, idOrUpdateKeys);
+  }
+
+  public void nativeUpsertPage(Page page) {
+    Skip skip = task.getSkipIfNonExistingIdOrUpdateKey();
+    reader.setPage(page);
+    KintoneWritePlan plan = writePlan();
+    while (reader.nextRecord()) {
+      Record record = new Record();
+      IdOrUpdateKey idOrUpdateKey = new IdOrUpdateKey();
+      plan.write(reader, record, idOrUpdateKey);
+      if (idOrUpdateKey.isUpdateKeyPresent()) {
+        nativeUpsertRecords.add(idOrUpdateKey.forUpdate(record));
+        if (isFull(nativeUpsertRecords)) {
+          flushNativeUpsertRecords();
+        }
+      } else if (skip == Skip.AUTO) {
+        LOGGER.warn("Record skipped because no update key value was specified");
+      } else {
+        LOGGER.warn("Record inserted though no update key value was specified");
+        insertRecords.add(record);
+        if (isFull(insertRecords)) {
+          flushInsertRecords();
+        }
+      }
     }
   }
 
-  private void upsert(List<Record> records, List<IdOrUpdateKey> idOrUpdateKeys) {
+  private void flushInsertRecords() {
+    // Hand the chunk over and start a new one instead of clearing it in place
+    List<Record> records = insertRecords;
+    insertRecords = new ArrayList<>();
+    insert(records);
+  }
+
+  private void flushEncodedRecords() {
+    EncodedRecords records = encodedRecords;
+    encodedRecords = null;
+    records.finish();
+    sendEncoded(records);
+  }
+
+  private void flushUpdateRecords() {
+    List<RecordForUpdate> records = updateRecords;
+    updateRecords = new ArrayList<>();
+    update(records);
+  }
+
+  private void flushNativeUpsertRecords() {
+    List<RecordForUpdate> records = nativeUpsertRecords;
+    nativeUpsertRecords = new ArrayList<>();
+    nativeUpsert(records);
+  }
+
+  private void flushUpsertRecords() {
+    List<Record> records = upsertRecords;
+    List<IdOrUpdateKey> idOrUpdateKeys = upsertIdOrUpdateKeys;
+    upsertRecords = new ArrayList<>();
+    upsertIdOrUpdateKeys = new ArrayList<>();
     if (records.size() != idOrUpdateKeys.size()) {
       throw new RuntimeException("records.size() != idOrUpdateKeys.size()");
     }
+    long sequence = ++lookupSequence;
+    Long[] cachedIds = getCachedIds(idOrUpdateKeys);
+    List<IdOrUpdateKey> uncachedKeys = idOrUpdateKeys;
+    if (cachedIds != null) {
+      // Records of cached keys are updated by id, so only the other keys are looked up
+      uncachedKeys = new ArrayList<>();
+      for (int i = 0; i < idOrUpdateKeys.size(); i++) {
+        if (cachedIds[i] == null) {
+          uncachedKeys.add(idOrUpdateKeys.get(i));
+        }
+      }
+    }
+    pendingUpserts.addLast(
+        new PendingUpsert(
+            records,
+            idOrUpdateKeys,
+            cachedIds,
+            sequence,
+            lookUp(uncachedKeys, idOrUpdateKeys.size(), sequence)));
+    while (pendingUpserts.size() >= task.getMaxOutstandingLookups()) {
+      upsertOldest();
+    }
+  }
+
+  /**
+   * @return the ids of the cached keys in the order of the keys, or null without the cache
+   */
+  private Long[] getCachedIds(List<IdOrUpdateKey> idOrUpdateKeys) {
+    if (keyIdCache == null) {
+      return null;
+    }
+    Long[] ids = new Long[idOrUpdateKeys.size()];
+    for (int i = 0; i < ids.length; i++) {
+      IdOrUpdateKey idOrUpdateKey = idOrUpdateKeys.get(i);
+      if (idOrUpdateKey.isUpdateKeyPresent()) {
+        ids[i] = keyIdCache.get().get(idOrUpdateKey.getValue());
+        keyCacheHits += ids[i] != null ? 1 : 0;
+      }
+    }
+    return ids;
+  }
+
+  private CompletableFuture<ExistenceIndex> lookUp(
+      List<IdOrUpdateKey> idOrUpdateKeys, int windowSize, long sequence) {
+    String columnName = task.getUpdateKeyName().orElse(Id.FIELD);
+    if (prefetcher == null) {
+      // Records left over from the previous window must be written before looking up existence
+      if (!insertRecords.isEmpty()) {
+        flushInsertRecords();
+      }
+      if (!updateRecords.isEmpty()) {
+        flushUpdateRecords();
+      }
+      if (!bulkChunks.isEmpty()) {
+        flushBulkChunks();
+      }
+      window.drain();
+      return CompletableFuture.completedFuture(lookUp(idOrUpdateKeys, columnName, windowSize));
+    }
+    if (recentlyInsertedKeys.size() >= task.getMaxOutstandingLookups()) {
+      // Wait for the inserts so that the keys to remember stay bounded
+      if (!insertRecords.isEmpty()) {
+        flushInsertRecords();
+      }
+      if (!bulkChunks.isEmpty()) {
+        flushBulkChunks();
+      }
+      window.drain();
+    }
+    if (insertRecords.isEmpty() && bulkChunks.isEmpty() && window.inFlight() == 0) {
+      // This lookup and the following ones see every record inserted so far
+      recentlyInsertedKeys.forEach(keys -> keys.visibleFrom(sequence));
+    }
+    // Lazy values are not thread-safe to initialize, so resolve them on the task thread
+    client.get();
+    if (dispatcher != null) {
+      dispatcher.get();
+    }
+    return CompletableFuture.supplyAsync(
+        () -> lookUp(idOrUpdateKeys, columnName, windowSize), prefetcher);
+  }
+
+  private ExistenceIndex lookUp(
+      List<IdOrUpdateKey> idOrUpdateKeys, String columnName, int windowSize) {
+    ExistenceIndex snapshot = getSnapshot(windowSize);
+    return snapshot != null
+        ? snapshot
+        : getExistingValuesByIdOrUpdateKey(idOrUpdateKeys, columnName);
+  }
+
+  private void upsertOldest() {
+    PendingUpsert pending = pendingUpserts.removeFirst();
+    ExistenceIndex existingValues;
+    try {
+      existingValues = pending.lookup.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    // Keys seen by the lookup of this window are also seen by those of the following windows
+    recentlyInsertedKeys.removeIf(keys -> keys.isVisibleFrom(pending.sequence));
+    upsert(pending.records, pending.idOrUpdateKeys, pending.cachedIds, existingValues);
+  }
+
+  private void upsert(
+      List<Record> records,
+      List<IdOrUpdateKey> idOrUpdateKeys,
+      Long[] cachedIds,
+      ExistenceIndex existingValues) {
     Skip skip = task.getSkipIfNonExistingIdOrUpdateKey();
     String columnName = task.getUpdateKeyName().orElse(Id.FIELD);
     boolean isId = columnName.equals(Id.FIELD);
-    List<String> existingValues =
-        executeWithRetry(() -> getExistingValuesByIdOrUpdateKey(idOrUpdateKeys, columnName));
-    List<Record> insertRecords = new ArrayList<>();
-    List<RecordForUpdate> updateRecords = new ArrayList<>();
+    List<Object> insertedKeys = new ArrayList<>();
+    boolean drained = false;
     for (int i = 0; i < records.size(); i++) {
       RecordForUpdate recordForUpdate = null;
       Record record = records.get(i);
       IdOrUpdateKey idOrUpdateKey = idOrUpdateKeys.get(i);
-      if (existsRecord(existingValues, idOrUpdateKey)) {
+      if (cachedIds != null && cachedIds[i] != null) {
+        recordForUpdate = new RecordForUpdate(cachedIds[i], record);
+      } else if (!isId && isRecentlyInserted(idOrUpdateKey)) {
+        // The record may be inserted by a request still in flight, so wait for it to complete
+        if (!drained) {
+          if (!insertRecords.isEmpty()) {
+            flushInsertRecords();
+          }
+          window.drain();
+          drained = true;
+        }
+        recordForUpdate = idOrUpdateKey.forUpdate(record);
+      } else if (existsRecord(existingValues, idOrUpdateKey)) {
         recordForUpdate = idOrUpdateKey.forUpdate(record);
+        Long id = keyIdCache != null ? existingValues.getId(idOrUpdateKey.getValue()) : null;
+        if (id != null) {
+          keyIdCache.get().put(idOrUpdateKey.getValue(), id);
+        }
       } else if (skip == Skip.ALWAYS && idOrUpdateKey.isPresent()) {
         LOGGER.warn(
             "Record skipped because non existing id or update key '"
@@ -349,97 +1029,297 @@ public class KintonePageOutput implements TransactionalPageOutput {
         updateRecords.add(recordForUpdate);
       } else {
         insertRecords.add(record);
+        if (!isId && idOrUpdateKey.isUpdateKeyPresent()) {
+          insertedKeys.add(idOrUpdateKey.getValue());
+        }
       }
-      if (insertRecords.size() == task.getChunkSize()) {
-        insert(insertRecords);
-        insertRecords.clear();
-      } else if (updateRecords.size() == task.getChunkSize()) {
-        update(updateRecords);
-        updateRecords.clear();
+      if (isFull(insertRecords)) {
+        flushInsertRecords();
+      } else if (isFull(updateRecords)) {
+        flushUpdateRecords();
       }
     }
-    if (!insertRecords.isEmpty()) {
-      insert(insertRecords);
-    }
-    if (!updateRecords.isEmpty()) {
-      update(updateRecords);
+    if (prefetcher != null && !isId && !insertedKeys.isEmpty()) {
+      // Lookups of the following windows may run before these records are inserted
+      ExistenceIndex keys =
+          newUpdateKeyIndex(getUpdateKeyFieldCode(columnName), insertedKeys.size());
+      insertedKeys.forEach(keys::add);
+      recentlyInsertedKeys.addLast(new InsertedKeys(keys));
     }
   }
 
-  private List<String> getExistingValuesByIdOrUpdateKey(
+  private boolean isRecentlyInserted(IdOrUpdateKey idOrUpdateKey) {
+    return idOrUpdateKey.isUpdateKeyPresent()
+        && recentlyInsertedKeys.stream().anyMatch(keys -> keys.contains(idOrUpdateKey));
+  }
+
+  private ExistenceIndex getExistingValuesByIdOrUpdateKey(
       List<IdOrUpdateKey> idOrUpdateKeys, String columnName) {
-    List<String> queryValues =
+    List<Object> values =
         idOrUpdateKeys.stream()
             .filter(IdOrUpdateKey::isPresent)
-            .map(k -> "\"" + k.getValue() + "\"")
+            .map(IdOrUpdateKey::getValue)
             .collect(Collectors.toList());
-    if (queryValues.isEmpty()) {
-      return Collections.emptyList();
+    if (values.isEmpty()) {
+      return ExistenceIndex.forId(0);
     }
     return columnName.equals(Id.FIELD)
-        ? getExistingValuesById(queryValues)
-        : getExistingValuesByUpdateKey(columnName, queryValues);
+        ? getExistingValuesById(values)
+        : getExistingValuesByUpdateKey(columnName, values);
+  }
+
+  private ExistenceIndex getExistingValuesById(List<Object> values) {
+    List<Long> ids =
+        values.stream().map(value -> ((Number) value).longValue()).collect(Collectors.toList());
+    ExistenceIndex index = ExistenceIndex.forId(values.size());
+    getExistingValues(LookupPlanner.planIds(ids), Record::getId, index);
+    return index;
   }
 
-  private List<String> getExistingValuesById(List<String> queryValues) {
-    return getExistingValues(Id.FIELD, Record::getId, queryValues);
+  private ExistenceIndex getExistingValuesByUpdateKey(String columnName, List<Object> values) {
+    String fieldCode = getUpdateKeyFieldCode(columnName);
+    ExistenceIndex index = newUpdateKeyIndex(fieldCode, values.size());
+    getExistingValues(
+        LookupPlanner.planUpdateKeys(fieldCode, values), getUpdateKeyValue(fieldCode), index);
+    return index;
   }
 
-  private List<String> getExistingValuesByUpdateKey(String columnName, List<String> queryValues) {
+  private String getUpdateKeyFieldCode(String columnName) {
     KintoneColumnOption option = task.getColumnOptions().get(columnName);
-    String fieldCode = option != null ? option.getFieldCode() : columnName;
+    return option != null ? option.getFieldCode() : columnName;
+  }
+
+  private ExistenceIndex newUpdateKeyIndex(String fieldCode, int expectedSize) {
+    return ExistenceIndex.forUpdateKey(getFieldType(fieldCode) == FieldType.NUMBER, expectedSize);
+  }
+
+  private Function<Record, Object> getUpdateKeyValue(String fieldCode) {
     KintoneColumnType type = KintoneColumnType.valueOf(getFieldType(fieldCode).name());
-    return getExistingValues(fieldCode, record -> type.getValue(record, fieldCode), queryValues);
+    return record -> type.getValue(record, fieldCode);
   }
 
-  private List<String> getExistingValues(
-      String fieldCode, Function<Record, Object> toValue, List<String> queryValues) {
-    String cursorId =
-        client
-            .get()
-            .record()
-            .createCursor(
-                task.getAppId(),
-                Collections.singletonList(fieldCode),
-                fieldCode + " in (" + String.join(",", queryValues) + ")");
-    List<Record> records = new ArrayList<>();
+  private ExistenceIndex getSnapshot(int windowSize) {
+    if (!snapshotChecked) {
+      snapshotChecked = true;
+      KintoneUpsertLookup lookup = task.getUpsertLookup();
+      if (lookup != KintoneUpsertLookup.WINDOW) {
+        long expected = task.getExpectedInputRecords().orElse((long) windowSize);
+        long maxRecords = lookup == KintoneUpsertLookup.AUTO ? expected * SNAPSHOT_RATIO : -1;
+        // Downloaded once for the tasks upserting to the app, which share it
+        snapshot = sharedSnapshot.get(() -> downloadSnapshot(maxRecords));
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Downloads the id and update key of all records of the app, reading $id ranges concurrently.
+   *
+   * @param maxRecords the app is not downloaded if it has more records than this, unless negative
+   */
+  private ExistenceIndex downloadSnapshot(long maxRecords) {
+    KintoneClient client = this.client.get();
+    String columnName = task.getUpdateKeyName().orElse(Id.FIELD);
+    boolean isId = columnName.equals(Id.FIELD);
+    String fieldCode = isId ? Id.FIELD : getUpdateKeyFieldCode(columnName);
+    List<String> fields =
+        isId ? Collections.singletonList(Id.FIELD) : Arrays.asList(Id.FIELD, fieldCode);
+    long start = System.nanoTime();
+    GetRecordsResponseBody first =
+        executeWithRetry(
+            limited(() -> getRecords(client, fields, "order by $id asc limit 1", true)));
+    long totalCount = first.getTotalCount() != null ? first.getTotalCount() : 0;
+    if (maxRecords >= 0 && totalCount > maxRecords) {
+      LOGGER.info(
+          String.format(
+              "Looking up existing records per window, since the app has %d records", totalCount));
+      return null;
+    }
+    ExistenceIndex index =
+        isId
+            ? ExistenceIndex.forId((int) totalCount)
+            : newUpdateKeyIndex(fieldCode, (int) totalCount);
+    if (first.getRecords().isEmpty()) {
+      return index;
+    }
+    Function<Record, Object> toValue = isId ? Record::getId : getUpdateKeyValue(fieldCode);
+    long from = first.getRecords().get(0).getId();
+    long to =
+        executeWithRetry(
+                limited(() -> getRecords(client, fields, "order by $id desc limit 1", false)))
+            .getRecords()
+            .get(0)
+            .getId();
+    for (IdRange range : IdRange.split(from, to, task.getMaxLookupConcurrency())) {
+      lookups.submit(
+          () -> {
+            Map<Object, Long> values = getAllValues(client, fields, null, range, toValue);
+            return () -> values.forEach(index::put);
+          });
+    }
+    lookups.drain();
+    long elapsed = System.nanoTime() - start;
+    lookupNanos.add(elapsed);
+    LOGGER.info(
+        String.format(
+            "Downloaded %d keys of %s in %d ms",
+            index.size(), fieldCode, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+    return index;
+  }
+
+  private Map<Object, Long> getAllValues(
+      KintoneClient client,
+      List<String> fields,
+      String filter,
+      IdRange range,
+      Function<Record, Object> toValue) {
+    Map<Object, Long> values = new HashMap<>();
+    long after = range.getFrom() - 1;
     while (true) {
-      GetRecordsByCursorResponseBody cursor = client.get().record().getRecordsByCursor(cursorId);
-      records.addAll(cursor.getRecords());
-      if (!cursor.hasNext()) {
-        break;
+      String query = range.seek(filter, after, GET_RECORDS_LIMIT);
+      List<Record> records =
+          executeWithRetry(limited(() -> getRecords(client, fields, query, false))).getRecords();
+      for (Record record : records) {
+        Object value = toValue.apply(record);
+        if (value != null) {
+          values.put(value, record.getId());
+        }
+        after = record.getId();
+      }
+      if (records.size() < GET_RECORDS_LIMIT) {
+        return values;
       }
     }
-    return records.stream()
-        .map(toValue)
-        .map(KintonePageOutput::toString)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
   }
 
-  private void putWrongTypeFields(Record record) {
-    record.getFieldCodes(true).stream()
-        .map(
-            fieldCode ->
-                Maps.immutableEntry(
-                    fieldCode, Pair.of(record.getFieldType(fieldCode), getFieldType(fieldCode))))
-        .filter(entry -> entry.getValue().getLeft() != entry.getValue().getRight())
-        .forEach(entry -> wrongTypeFields.put(entry.getKey(), entry.getValue()));
+  private GetRecordsResponseBody getRecords(
+      KintoneClient client, List<String> fields, String query, boolean totalCount) {
+    GetRecordsRequest request = new GetRecordsRequest();
+    request.setApp((long) task.getAppId());
+    request.setFields(fields);
+    request.setQuery(query);
+    request.setTotalCount(totalCount);
+    return client.transport().getRecords(request);
   }
 
-  private FieldType getFieldType(String fieldCode) {
-    return client.get().getFieldType(fieldCode);
+  private void getExistingValues(
+      LookupPlan plan, Function<Record, Object> toValue, ExistenceIndex index) {
+    // Queries run concurrently, and their results are merged into the index on the task thread
+    KintoneClient client = this.client.get();
+    long start = System.nanoTime();
+    for (String query : plan.getQueries()) {
+      Supplier<Map<Object, Long>> lookup =
+          limited(() -> getExistingValues(client, plan.getFieldCode(), toValue, query));
+      lookups.submit(
+          () -> {
+            Map<Object, Long> values = seekLookups ? null : executeWithRetry(lookup);
+            if (values == null) {
+              return seekExistingValues(client, plan.getFieldCode(), toValue, query, index);
+            }
+            return () ->
+                values.forEach(
+                    (value, id) -> {
+                      if (id != null) {
+                        index.put(value, id);
+                      } else {
+                        index.add(value);
+                      }
+                    });
+          });
+    }
+    lookups.drain();
+    long elapsed = System.nanoTime() - start;
+    lookupNanos.add(elapsed);
+    LOGGER.info(
+        String.format("Looked up %s in %d ms", plan, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+  }
+
+  /**
+   * Reads the values of the query with a cursor, and their ids if they are cached.
+   *
+   * @return the values mapped to their ids or null if not read, or null if the domain has too
+   *     many cursors, after which lookups seek instead
+   */
+  private Map<Object, Long> getExistingValues(
+      KintoneClient client, String fieldCode, Function<Record, Object> toValue, String query) {
+    List<String> fields =
+        keyIdCache != null && !fieldCode.equals(Id.FIELD)
+            ? Arrays.asList(Id.FIELD, fieldCode)
+            : Collections.singletonList(fieldCode);
+    CursorManager.Cursor opened;
+    try {
+      opened = cursors.open(client.transport(), task.getAppId(), fields, query);
+    } catch (KintoneApiRuntimeException e) {
+      if (!isTooManyCursors(e)) {
+        throw e;
+      }
+      if (!seekLookups) {
+        seekLookups = true;
+        LOGGER.warn("Looking up existing records without cursors, since there are too many");
+      }
+      return null;
+    }
+    Map<Object, Long> values = new HashMap<>();
+    try (CursorManager.Cursor cursor = opened) {
+      while (cursor.hasNext()) {
+        cursor.next().forEach(record -> values.put(toValue.apply(record), record.getId()));
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reads the values of the query page by page ordered by $id. If there are more than a page, the
+   * rest of the $id range is split into ranges read concurrently.
+   *
+   * @return the completion merging the values into the index, and submitting the ranges
+   */
+  private Runnable seekExistingValues(
+      KintoneClient client,
+      String fieldCode,
+      Function<Record, Object> toValue,
+      String query,
+      ExistenceIndex index) {
+    List<String> fields =
+        fieldCode.equals(Id.FIELD)
+            ? Collections.singletonList(Id.FIELD)
+            : Arrays.asList(Id.FIELD, fieldCode);
+    String head = IdRange.head(query, GET_RECORDS_LIMIT);
+    List<Record> records =
+        executeWithRetry(limited(() -> getRecords(client, fields, head, false))).getRecords();
+    Map<Object, Long> values = new HashMap<>();
+    for (Record record : records) {
+      Object value = toValue.apply(record);
+      if (value != null) {
+        values.put(value, record.getId());
+      }
+    }
+    if (records.size() < GET_RECORDS_LIMIT) {
+      return () -> values.forEach(index::put);
+    }
+    long after = records.get(records.size() - 1).getId();
+    List<Record> last =
+        executeWithRetry(limited(() -> getRecords(client, fields, IdRange.last(query), false)))
+            .getRecords();
+    long to = last.isEmpty() ? after : last.get(0).getId();
+    return () -> {
+      values.forEach(index::put);
+      for (IdRange range : IdRange.split(after + 1, to, task.getMaxLookupConcurrency())) {
+        lookups.submit(
+            () -> {
+              Map<Object, Long> rest = getAllValues(client, fields, query, range, toValue);
+              return () -> rest.forEach(index::put);
+            });
+      }
+    };
   }
 
-  private static boolean existsRecord(List<String> existingValues, IdOrUpdateKey idOrUpdateKey) {
-    String value = toString(idOrUpdateKey.getValue());
-    return value != null && existingValues.stream().anyMatch(v -> v.equals(value));
+  private FieldType getFieldType(String fieldCode) {
+    return client.get().getFieldType(fieldCode);
   }
 
-  private static String toString(Object value) {
-    return value == null
-        ? null
-        : value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+  private static boolean existsRecord(ExistenceIndex existingValues, IdOrUpdateKey idOrUpdateKey) {
+    return existingValues.contains(idOrUpdateKey.getValue());
   }
 
   /**
@@ -504,54 +1384,101 @@ public class KintonePageOutput implements TransactionalPageOutput {
     return fullMessage.toString();
   }
 
-  /** Logs Kintone API errors to file */
-  private void logApiError(KintoneApiRuntimeException e, List<?> records) {
+  /**
+   * Collects error codes from Kintone API error response.
+   *
+   * @param content Error response, or bulk request error response which has error response of
+   *     each request in "results"
+   * @return Error codes (e.g., "GAIA_RE18")
+   */
+  private static List<String> getErrorCodes(JsonNode content) {
+    List<String> codes = new ArrayList<>();
+    if (content.has("code")) {
+      codes.add(content.get("code").textValue());
+    }
+    if (content.has("results")) {
+      content.get("results").forEach(result -> codes.addAll(getErrorCodes(result)));
+    }
+    return codes;
+  }
+
+  /** Logs Kintone bulk request errors to file, mapping each result to its chunk */
+  private void logBulkApiError(KintoneApiRuntimeException e, List<Chunk> chunks) {
     try {
       ObjectMapper mapper = new ObjectMapper();
       JsonNode errorResponse = mapper.readTree(e.getContent());
-      String errorCode = errorResponse.has("code") ? errorResponse.get("code").textValue() : "";
-      String errorMessage =
-          errorResponse.has("message") ? errorResponse.get("message").textValue() : "";
-      // Parse errors field in error response
-      if (errorResponse.has("errors")) {
-        JsonNode errors = errorResponse.get("errors");
-
-        // Pre-convert all records to maps for easier handling
-        List<Map<String, Object>> recordMaps = convertRecordsToMaps(records);
-
-        // Group errors by record index
-        Map<Integer, List<String>> errorsByRecordIndex = new HashMap<>();
-
-        errors
-            .fieldNames()
-            .forEachRemaining(
-                fieldName -> {
-                  int recordIndex = extractRecordIndex(fieldName);
-                  if (recordIndex == -1 || recordIndex >= recordMaps.size()) {
-                    return;
-                  }
-
-                  JsonNode fieldError = errors.get(fieldName);
-                  String fieldErrorMessage = buildErrorMessage(errorMessage, fieldName, fieldError);
+      if (!errorResponse.has("results")) {
+        return;
+      }
+      JsonNode results = errorResponse.get("results");
+      for (int i = 0; i < results.size() && i < chunks.size(); i++) {
+        logApiError(results.get(i), chunks.get(i).getRecords(), 0);
+      }
+    } catch (IOException ex) {
+      LOGGER.error("Failed to parse Kintone API error response", ex);
+    }
+  }
 
-                  errorsByRecordIndex
-                      .computeIfAbsent(recordIndex, k -> new ArrayList<>())
-                      .add(fieldErrorMessage);
-                });
+  /** Logs Kintone API errors to file */
+  private void logApiError(KintoneApiRuntimeException e, List<?> records) {
+    logApiError(e, records, 0);
+  }
 
-        // Log combined errors for each record
-        errorsByRecordIndex.forEach(
-            (recordIndex, errorMessages) -> {
-              Map<String, Object> recordData = recordMaps.get(recordIndex);
-              String combinedMessage = String.join("\n", errorMessages);
-              errorFileLogger.logError(recordData, errorCode, combinedMessage);
-            });
-      }
+  /** Logs Kintone API errors to file, where the records start at the offset of the request */
+  private void logApiError(KintoneApiRuntimeException e, List<?> records, int offset) {
+    try {
+      ObjectMapper mapper = new ObjectMapper();
+      logApiError(mapper.readTree(e.getContent()), records, offset);
     } catch (IOException ex) {
       LOGGER.error("Failed to parse Kintone API error response", ex);
     }
   }
 
+  private void logApiError(JsonNode errorResponse, List<?> records, int offset) {
+    String errorCode = errorResponse.has("code") ? errorResponse.get("code").textValue() : "";
+    String errorMessage =
+        errorResponse.has("message") ? errorResponse.get("message").textValue() : "";
+    // Parse errors field in error response
+    if (errorResponse.has("errors")) {
+      JsonNode errors = errorResponse.get("errors");
+
+      // Pre-convert all records to maps for easier handling
+      List<Map<String, Object>> recordMaps = convertRecordsToMaps(records);
+
+      // Group errors by record index
+      Map<Integer, List<String>> errorsByRecordIndex = new HashMap<>();
+
+      errors
+          .fieldNames()
+          .forEachRemaining(
+              fieldName -> {
+                int recordIndex = extractRecordIndex(fieldName);
+                if (recordIndex == -1) {
+                  return;
+                }
+                recordIndex -= offset;
+                if (recordIndex < 0 || recordIndex >= recordMaps.size()) {
+                  return;
+                }
+
+                JsonNode fieldError = errors.get(fieldName);
+                String fieldErrorMessage = buildErrorMessage(errorMessage, fieldName, fieldError);
+
+                errorsByRecordIndex
+                    .computeIfAbsent(recordIndex, k -> new ArrayList<>())
+                    .add(fieldErrorMessage);
+              });
+
+      // Log combined errors for each record
+      errorsByRecordIndex.forEach(
+          (recordIndex, errorMessages) -> {
+            Map<String, Object> recordData = recordMaps.get(recordIndex);
+            String combinedMessage = String.join("\n", errorMessages);
+            errorFileLogger.logError(recordData, errorCode, combinedMessage);
+          });
+    }
+  }
+
   /** Converts list of records to list of maps for easier handling */
   private List<Map<String, Object>> convertRecordsToMaps(List<?> records) {
     List<Map<String, Object>> recordMaps = new ArrayList<>();
@@ -563,6 +1490,12 @@ public class KintonePageOutput implements TransactionalPageOutput {
         record = (Record) recordObj;
       } else if (recordObj instanceof RecordForUpdate) {
         record = ((RecordForUpdate) recordObj).getRecord();
+      } else if (recordObj instanceof Map) {
+        // Already decoded from an encoded body
+        @SuppressWarnings("unchecked")
+        Map<String, Object> recordData = (Map<String, Object>) recordObj;
+        recordMaps.add(recordData);
+        continue;
       }
 
       if (record != null) {
@@ -673,4 +1606,55 @@ public class KintonePageOutput implements TransactionalPageOutput {
       return null;
     }
   }
+
+  /** Creates the daemon thread looking up the existing records of the following windows */
+  private static Thread newPrefetcherThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "embulk-output-kintone-lookup");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /** Window of upserted records waiting for the lookup of their existing records */
+  private static class PendingUpsert {
+    private final List<Record> records;
+    private final List<IdOrUpdateKey> idOrUpdateKeys;
+    private final Long[] cachedIds;
+    private final long sequence;
+    private final CompletableFuture<ExistenceIndex> lookup;
+
+    private PendingUpsert(
+        List<Record> records,
+        List<IdOrUpdateKey> idOrUpdateKeys,
+        Long[] cachedIds,
+        long sequence,
+        CompletableFuture<ExistenceIndex> lookup) {
+      this.records = records;
+      this.idOrUpdateKeys = idOrUpdateKeys;
+      this.cachedIds = cachedIds;
+      this.sequence = sequence;
+      this.lookup = lookup;
+    }
+  }
+
+  /** Update keys inserted by a window, remembered until every later lookup is known to see them */
+  private static class InsertedKeys {
+    private final ExistenceIndex keys;
+    private long visibleFrom = Long.MAX_VALUE;
+
+    private InsertedKeys(ExistenceIndex keys) {
+      this.keys = keys;
+    }
+
+    private boolean contains(IdOrUpdateKey idOrUpdateKey) {
+      return keys.contains(idOrUpdateKey.getValue());
+    }
+
+    private void visibleFrom(long sequence) {
+      visibleFrom = Math.min(visibleFrom, sequence);
+    }
+
+    private boolean isVisibleFrom(long sequence) {
+      return visibleFrom <= sequence;
+    }
+  }
 }
@@ -0,0 +1,87 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** How the temporary files of sorted records to reduce are compressed. */
+public enum KintoneSortCompression {
+  NONE {
+    @Override
+    public OutputStream compress(OutputStream out) {
+      return out;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+      return in;
+    }
+  },
+  /** Deflate at the fastest level in the zlib format, whose header is smaller than that of gzip. */
+  DEFLATE {
+    @Override
+    public OutputStream compress(OutputStream out) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // Not ended by the stream, since it is not the default one
+            deflater.end();
+          }
+        }
+      };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+      Inflater inflater = new Inflater();
+      return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // Not ended by the stream, since it is not the default one
+            inflater.end();
+          }
+        }
+      };
+    }
+  },
+  /** Gzip at the fastest level. */
+  GZIP {
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE) {
+        {
+          def.setLevel(Deflater.BEST_SPEED);
+        }
+      };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+      return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+  };
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public abstract OutputStream compress(OutputStream out) throws IOException;
+
+  public abstract InputStream decompress(InputStream in) throws IOException;
+
+  @JsonCreator
+  public static KintoneSortCompression of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+}
@@ -0,0 +1,55 @@
+package org.embulk.output.kintone;
+
+import com.kintone.client.api.common.BulkRequestsRequest;
+import com.kintone.client.api.common.BulkRequestsResponseBody;
+import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import com.kintone.client.api.record.GetRecordsRequest;
+import com.kintone.client.api.record.GetRecordsResponseBody;
+import com.kintone.client.model.app.field.FieldProperty;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Requests sent to kintone by the plugin.
+ *
+ * <p>Errors of kintone are thrown as {@link
+ * com.kintone.client.exception.KintoneApiRuntimeException} by every implementation, so that they
+ * are retried and logged the same.
+ */
+public interface KintoneTransport extends AutoCloseable {
+  Map<String, FieldProperty> getFormFields(long app);
+
+  /**
+   * @return the revision of the settings of the app, which is changed with its form
+   */
+  long getAppRevision(long app);
+
+  /**
+   * @return the ids of the added records
+   */
+  List<Long> addRecords(long app, List<Record> records);
+
+  void updateRecords(long app, List<RecordForUpdate> records);
+
+  /** Updates the records by their update keys, adding those not found. */
+  void upsertRecords(long app, List<RecordForUpdate> records);
+
+  GetRecordsResponseBody getRecords(GetRecordsRequest request);
+
+  /**
+   * @param size the number of records per fetch, or null for the default of kintone
+   * @return the id of the cursor
+   */
+  String createCursor(long app, List<String> fields, String query, Long size);
+
+  GetRecordsByCursorResponseBody getRecordsByCursor(String id);
+
+  void deleteCursor(String id);
+
+  BulkRequestsResponseBody bulkRequests(BulkRequestsRequest request);
+
+  @Override
+  void close();
+}
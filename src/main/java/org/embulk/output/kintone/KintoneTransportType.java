@@ -0,0 +1,19 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/** How requests are sent to kintone. */
+public enum KintoneTransportType {
+  /** Sends every request with kintone-java-client. */
+  CLIENT,
+  /**
+   * Sends writes and cursors over plain HTTP connections kept alive, and the others with the
+   * client.
+   */
+  HTTP;
+
+  @JsonCreator
+  public static KintoneTransportType of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+}
@@ -0,0 +1,18 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/** How the cursor-based upsert looks up existing records. */
+public enum KintoneUpsertLookup {
+  /** Queries the keys of each window. */
+  WINDOW,
+  /** Downloads the keys of all records of the app once, at the first window. */
+  SNAPSHOT,
+  /** Uses {@link #SNAPSHOT} if the app is small compared with the expected input. */
+  AUTO;
+
+  @JsonCreator
+  public static KintoneUpsertLookup of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+}
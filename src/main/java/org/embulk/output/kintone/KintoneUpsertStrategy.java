@@ -0,0 +1,27 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import org.embulk.output.kintone.record.Id;
+import org.embulk.output.kintone.record.Skip;
+
+public enum KintoneUpsertStrategy {
+  CURSOR,
+  NATIVE;
+
+  /**
+   * Whether the upsert can be delegated to kintone's update records API with the upsert flag.
+   *
+   * <p>The API only identifies records by update key, and it always inserts non-existing records,
+   * so lookups by id and the {@code always} skip policy still need the cursor-based upsert.
+   */
+  public boolean isNative(PluginTask task) {
+    return this == NATIVE
+        && !task.getUpdateKeyName().orElse(Id.FIELD).equals(Id.FIELD)
+        && task.getSkipIfNonExistingIdOrUpdateKey() != Skip.ALWAYS;
+  }
+
+  @JsonCreator
+  public static KintoneUpsertStrategy of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+}
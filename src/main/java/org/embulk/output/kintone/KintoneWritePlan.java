@@ -0,0 +1,371 @@
+package org.embulk.output.kintone;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.NumberOutput;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.kintone.client.model.record.FieldType;
+import com.kintone.client.model.record.FieldValue;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.UpdateKey;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.lang3.tuple.Pair;
+import org.embulk.config.ConfigException;
+import org.embulk.output.kintone.encoder.FieldValueEncoder;
+import org.embulk.output.kintone.record.Id;
+import org.embulk.output.kintone.record.IdOrUpdateKey;
+import org.embulk.output.kintone.util.Lazy;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.type.Types;
+import org.msgpack.value.ValueFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writers of the columns of a schema into kintone records, built once per task.
+ *
+ * <p>The field code, type, option and update key role of each column are resolved when the plan is
+ * built, and columns which are not written (reduced, builtin) have no writer, so that writing a
+ * record only reads the values and converts them.
+ */
+public class KintoneWritePlan {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final List<String> BUILTIN_FIELD_CODES = Arrays.asList(Id.FIELD, "$revision");
+  private static final Timestamp EPOCH = Timestamp.ofInstant(Instant.EPOCH);
+  // Dates and times memoized per column, enough for a few thousand distinct values
+  private static final int TEMPORAL_CACHE_SIZE = 4096;
+  private static final SerializableString VALUE = new SerializedString("value");
+  // Types whose values are the strings of string columns as is
+  private static final EnumSet<KintoneColumnType> TEXT_TYPES =
+      EnumSet.of(
+          KintoneColumnType.SINGLE_LINE_TEXT,
+          KintoneColumnType.MULTI_LINE_TEXT,
+          KintoneColumnType.RICH_TEXT,
+          KintoneColumnType.RADIO_BUTTON,
+          KintoneColumnType.DROP_DOWN,
+          KintoneColumnType.LINK);
+  private final ColumnWriter[] writersByIndex;
+  private final ColumnWriter[] writers;
+  private final List<KintoneColumnFormat> formats = new ArrayList<>();
+
+  public KintoneWritePlan(
+      Lazy<KintoneClient> client,
+      Schema schema,
+      Map<String, KintoneColumnOption> options,
+      boolean preferNulls,
+      boolean ignoreNulls,
+      String reduceKeyName,
+      String updateKeyName) {
+    writersByIndex = new ColumnWriter[schema.getColumnCount()];
+    List<ColumnWriter> writers = new ArrayList<>();
+    for (Column column : schema.getColumns()) {
+      ColumnWriter writer =
+          newWriter(
+              formats,
+              client,
+              column,
+              options.get(column.getName()),
+              preferNulls,
+              ignoreNulls,
+              reduceKeyName,
+              updateKeyName);
+      if (writer != null) {
+        writersByIndex[column.getIndex()] = writer;
+        writers.add(writer);
+      }
+    }
+    this.writers = writers.toArray(new ColumnWriter[0]);
+  }
+
+  /**
+   * @param idOrUpdateKey set if the plan has an update key, otherwise may be null
+   */
+  public void write(PageReader reader, Record record, IdOrUpdateKey idOrUpdateKey) {
+    for (ColumnWriter writer : writers) {
+      writer.write(reader, record, idOrUpdateKey);
+    }
+  }
+
+  /** Writes a column only, doing nothing if the column is not written. */
+  public void write(Column column, PageReader reader, Record record, IdOrUpdateKey idOrUpdateKey) {
+    ColumnWriter writer = writersByIndex[column.getIndex()];
+    if (writer != null) {
+      writer.write(reader, record, idOrUpdateKey);
+    }
+  }
+
+  /**
+   * Whether records are encoded by {@link #encode}, which is not the case for the id, files and
+   * subtables.
+   */
+  public boolean supportsEncoding() {
+    return Arrays.stream(writers).allMatch(writer -> writer.valueEncoder != null);
+  }
+
+  /** Encodes the fields of the current record as those of a request, without the object model. */
+  public void encode(PageReader reader, JsonGenerator generator) throws IOException {
+    for (ColumnWriter writer : writers) {
+      writer.encode(reader, generator);
+    }
+  }
+
+  public int getFieldCount() {
+    return writers.length;
+  }
+
+  /**
+   * Returns the fields written with types other than those of the form, as pairs of the written
+   * and form types.
+   */
+  public Map<String, Pair<FieldType, FieldType>> getWrongTypeFields(KintoneClient client) {
+    Map<String, Pair<FieldType, FieldType>> wrongTypeFields = new TreeMap<>();
+    for (ColumnWriter writer : writers) {
+      if (writer.type == null) {
+        continue;
+      }
+      FieldType written = FieldType.valueOf(writer.type.name());
+      FieldType expected = client.getFieldType(writer.fieldCode);
+      if (written != expected) {
+        wrongTypeFields.put(writer.fieldCode, Pair.of(written, expected));
+      }
+    }
+    return wrongTypeFields;
+  }
+
+  /** Number of dates and times found in the caches of the columns. */
+  public long getTemporalCacheHits() {
+    return formats.stream().mapToLong(KintoneColumnFormat::getCacheHits).sum();
+  }
+
+  public long getTemporalCacheMisses() {
+    return formats.stream().mapToLong(KintoneColumnFormat::getCacheMisses).sum();
+  }
+
+  private static ColumnWriter newWriter(
+      List<KintoneColumnFormat> formats,
+      Lazy<KintoneClient> client,
+      Column column,
+      KintoneColumnOption option,
+      boolean preferNulls,
+      boolean ignoreNulls,
+      String reduceKeyName,
+      String updateKeyName) {
+    if (reduceKeyName != null && column.getName().contains(".")) {
+      return null;
+    }
+    boolean isUpdateKey = column.getName().equals(updateKeyName);
+    if (isUpdateKey && updateKeyName.equals(Id.FIELD) && column.getType().equals(Types.LONG)) {
+      return new ColumnWriter(column, null, null, false, preferNulls, ignoreNulls, null, null);
+    }
+    String fieldCode = option != null ? option.getFieldCode() : column.getName();
+    if (BUILTIN_FIELD_CODES.contains(fieldCode)) {
+      return null;
+    }
+    KintoneColumnType type = getType(client, option, column.getName());
+    LOGGER.debug("column name: {}, type: {}", column.getName(), column.getType());
+    KintoneColumnFormat format = KintoneColumnFormat.of(option, TEMPORAL_CACHE_SIZE);
+    formats.add(format);
+    ValueReader valueReader = newValueReader(column, type, format);
+    return new ColumnWriter(
+        column,
+        fieldCode,
+        type,
+        isUpdateKey,
+        preferNulls,
+        ignoreNulls,
+        valueReader,
+        newValueEncoder(column, type, valueReader));
+  }
+
+  private static KintoneColumnType getType(
+      Lazy<KintoneClient> client, KintoneColumnOption option, String fieldCode) {
+    if (option != null) {
+      return KintoneColumnType.valueOf(option.getType());
+    }
+    FieldType fieldType = client.get().getFieldType(fieldCode);
+    if (fieldType == null) {
+      throw new ConfigException("The field '" + fieldCode + "' does not exist.");
+    }
+    return KintoneColumnType.valueOf(fieldType.toString());
+  }
+
+  /** Resolves the conversion of the column by its Embulk type, once. */
+  private static ValueReader newValueReader(
+      Column column, KintoneColumnType type, KintoneColumnFormat format) {
+    if (!column.getType().equals(Types.STRING) && !type.supports(column.getType())) {
+      return (reader, isNull) -> {
+        throw new UnsupportedOperationException();
+      };
+    }
+    ValueReader[] valueReader = new ValueReader[1];
+    column.visit(
+        new ColumnVisitor() {
+          @Override
+          public void booleanColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) -> type.convert(!isNull && reader.getBoolean(column), format);
+          }
+
+          @Override
+          public void longColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) -> type.convert(isNull ? 0 : reader.getLong(column), format);
+          }
+
+          @Override
+          public void doubleColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) -> type.convert(isNull ? 0 : reader.getDouble(column), format);
+          }
+
+          @Override
+          public void stringColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) -> type.convert(isNull ? "" : reader.getString(column), format);
+          }
+
+          @Override
+          public void timestampColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) ->
+                    type.convert(isNull ? EPOCH : reader.getTimestamp(column), format);
+          }
+
+          @Override
+          public void jsonColumn(Column column) {
+            valueReader[0] =
+                (reader, isNull) ->
+                    type.convert(
+                        isNull ? ValueFactory.newString("") : reader.getJson(column), format);
+          }
+        });
+    return valueReader[0];
+  }
+
+  /**
+   * Resolves the encoding of the column, writing strings and numbers without field values, or
+   * returns null if the column is not encoded.
+   */
+  private static ValueEncoder newValueEncoder(
+      Column column, KintoneColumnType type, ValueReader valueReader) {
+    if (type == KintoneColumnType.FILE || type == KintoneColumnType.SUBTABLE) {
+      return null;
+    }
+    if (column.getType().equals(Types.STRING) && TEXT_TYPES.contains(type)) {
+      return (reader, isNull, generator) ->
+          generator.writeString(isNull ? "" : reader.getString(column));
+    }
+    if (column.getType().equals(Types.LONG) && type == KintoneColumnType.NUMBER) {
+      // Long.MIN_VALUE has 20 characters
+      char[] digits = new char[20];
+      return (reader, isNull, generator) -> {
+        int length = NumberOutput.outputLong(isNull ? 0 : reader.getLong(column), digits, 0);
+        generator.writeString(digits, 0, length);
+      };
+    }
+    return (reader, isNull, generator) ->
+        FieldValueEncoder.encode(generator, valueReader.read(reader, isNull));
+  }
+
+  private interface ValueReader {
+    FieldValue read(PageReader reader, boolean isNull);
+  }
+
+  private interface ValueEncoder {
+    void encode(PageReader reader, boolean isNull, JsonGenerator generator) throws IOException;
+  }
+
+  private static class ColumnWriter {
+    private final Column column;
+    private final String fieldCode;
+    private final KintoneColumnType type;
+    private final boolean isUpdateKey;
+    private final boolean preferNulls;
+    private final boolean ignoreNulls;
+    // null if the column is the id
+    private final ValueReader valueReader;
+    // null if the column is not encoded
+    private final ValueEncoder valueEncoder;
+    private final SerializableString name;
+
+    private ColumnWriter(
+        Column column,
+        String fieldCode,
+        KintoneColumnType type,
+        boolean isUpdateKey,
+        boolean preferNulls,
+        boolean ignoreNulls,
+        ValueReader valueReader,
+        ValueEncoder valueEncoder) {
+      this.column = column;
+      this.fieldCode = fieldCode;
+      this.type = type;
+      this.isUpdateKey = isUpdateKey;
+      this.preferNulls = preferNulls;
+      this.ignoreNulls = ignoreNulls;
+      this.valueReader = valueReader;
+      this.valueEncoder = valueEncoder;
+      name = fieldCode == null ? null : new SerializedString(fieldCode);
+    }
+
+    private void write(PageReader reader, Record record, IdOrUpdateKey idOrUpdateKey) {
+      boolean isNull = reader.isNull(column);
+      if (isNull && ignoreNulls) {
+        return;
+      }
+      if (valueReader == null) {
+        Id id = idOrUpdateKey.getId();
+        if (isNull && preferNulls) {
+          id.setValue(null);
+        } else if (isNull) {
+          id.setValue(0L);
+        } else {
+          id.setValue(reader.getLong(column));
+        }
+        return;
+      }
+      UpdateKey updateKey = isUpdateKey ? idOrUpdateKey.getUpdateKey() : null;
+      if (isNull && preferNulls) {
+        if (updateKey != null) {
+          type.setUpdateKey(updateKey, fieldCode);
+        }
+        record.putField(fieldCode, type.getFieldValue());
+        return;
+      }
+      FieldValue fieldValue = valueReader.read(reader, isNull);
+      if (updateKey != null) {
+        type.setUpdateKey(updateKey, fieldCode, fieldValue);
+      }
+      record.putField(fieldCode, fieldValue);
+    }
+
+    private void encode(PageReader reader, JsonGenerator generator) throws IOException {
+      boolean isNull = reader.isNull(column);
+      if (isNull && ignoreNulls) {
+        return;
+      }
+      generator.writeFieldName(name);
+      generator.writeStartObject();
+      generator.writeFieldName(VALUE);
+      if (isNull && preferNulls) {
+        FieldValueEncoder.encode(generator, type.getFieldValue());
+      } else {
+        valueEncoder.encode(reader, isNull, generator);
+      }
+      generator.writeEndObject();
+    }
+  }
+}
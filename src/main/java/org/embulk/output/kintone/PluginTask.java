@@ -1,5 +1,6 @@
 package org.embulk.output.kintone;
 
+import com.kintone.client.model.record.FieldType;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -65,6 +66,18 @@ public interface PluginTask extends Task {
   @ConfigDefault("null")
   Optional<String> getUpdateKeyName();
 
+  @Config("upsert_strategy")
+  @ConfigDefault("\"cursor\"")
+  KintoneUpsertStrategy getUpsertStrategy();
+
+  @Config("upsert_lookup")
+  @ConfigDefault("\"window\"")
+  KintoneUpsertLookup getUpsertLookup();
+
+  @Config("expected_input_records")
+  @ConfigDefault("null")
+  Optional<Long> getExpectedInputRecords();
+
   @Config("reduce_key")
   @ConfigDefault("null")
   Optional<String> getReduceKeyName();
@@ -81,10 +94,94 @@ public interface PluginTask extends Task {
   @ConfigDefault("null")
   Optional<Long> getMaxSortMemory();
 
+  @Config("sort_tmp_dir")
+  @ConfigDefault("null")
+  Optional<String> getSortTmpDir();
+
+  @Config("sort_tmp_compression")
+  @ConfigDefault("\"none\"")
+  KintoneSortCompression getSortTmpCompression();
+
   @Config("chunk_size")
   @ConfigDefault("100")
   Integer getChunkSize();
 
+  @Config("bulk_request")
+  @ConfigDefault("\"false\"")
+  boolean getBulkRequest();
+
+  @Config("max_in_flight_requests")
+  @ConfigDefault("1")
+  Integer getMaxInFlightRequests();
+
+  @Config("shared_dispatcher")
+  @ConfigDefault("\"false\"")
+  boolean getSharedDispatcher();
+
+  @Config("max_concurrent_requests")
+  @ConfigDefault("10")
+  Integer getMaxConcurrentRequests();
+
+  @Config("dispatcher_linger_millis")
+  @ConfigDefault("100")
+  Long getDispatcherLingerMillis();
+
+  @Config("adaptive_concurrency")
+  @ConfigDefault("\"false\"")
+  boolean getAdaptiveConcurrency();
+
+  @Config("max_lookup_concurrency")
+  @ConfigDefault("4")
+  Integer getMaxLookupConcurrency();
+
+  @Config("max_outstanding_lookups")
+  @ConfigDefault("1")
+  Integer getMaxOutstandingLookups();
+
+  @Config("max_open_cursors")
+  @ConfigDefault("10")
+  Integer getMaxOpenCursors();
+
+  @Config("cursor_fetch_size")
+  @ConfigDefault("null")
+  Optional<Integer> getCursorFetchSize();
+
+  @Config("lookup_pagination")
+  @ConfigDefault("\"cursor\"")
+  KintoneLookupPagination getLookupPagination();
+
+  @Config("key_cache_size")
+  @ConfigDefault("0")
+  Integer getKeyCacheSize();
+
+  @Config("key_cache_spill")
+  @ConfigDefault("\"false\"")
+  boolean getKeyCacheSpill();
+
+  @Config("direct_encoding")
+  @ConfigDefault("\"false\"")
+  boolean getDirectEncoding();
+
+  @Config("transport")
+  @ConfigDefault("\"client\"")
+  KintoneTransportType getTransport();
+
+  @Config("http_connect_timeout_millis")
+  @ConfigDefault("30000")
+  Integer getHttpConnectTimeoutMillis();
+
+  @Config("http_read_timeout_millis")
+  @ConfigDefault("300000")
+  Integer getHttpReadTimeoutMillis();
+
+  @Config("client_warm_up")
+  @ConfigDefault("\"false\"")
+  boolean getClientWarmUp();
+
+  @Config("form_cache_dir")
+  @ConfigDefault("null")
+  Optional<String> getFormCacheDir();
+
   @Config("retry_options")
   @ConfigDefault("{}")
   KintoneRetryOption getRetryOptions();
@@ -96,4 +193,9 @@ public interface PluginTask extends Task {
   Set<Column> getDerivedColumns();
 
   void setDerivedColumns(Set<Column> columns);
+
+  /** Types of the fields used by the job, from the form fetched once in the transaction. */
+  Map<String, FieldType> getFieldTypes();
+
+  void setFieldTypes(Map<String, FieldType> fieldTypes);
 }
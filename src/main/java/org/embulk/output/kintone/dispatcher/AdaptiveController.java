@@ -0,0 +1,124 @@
+package org.embulk.output.kintone.dispatcher;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AIMD controller of the number of concurrent requests and the chunk size.
+ *
+ * <p>The concurrency is raised additively while requests succeed with stable latency, and cut in
+ * half on congestion, i.e. lock errors, throttling or latency spikes. Once the concurrency is at
+ * its minimum, congestion halves the chunk size instead. The chunk size is also bounded by the
+ * number of fields per request, so that very wide records are sent in smaller chunks.
+ */
+public class AdaptiveController {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double SPIKE_FACTOR = 3.0;
+  private static final long SPIKE_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+  private static final double LATENCY_WEIGHT = 0.1;
+  private static final int LATENCY_SAMPLES = 5;
+  private static final double CHUNK_SCALE_STEP = 0.05;
+  private static final int FIELDS_PER_REQUEST = 10000;
+  private final int maxConcurrency;
+  private double concurrency = 1;
+  private double chunkScale = 1;
+  private double latency;
+  private int samples;
+  private int inFlight;
+  private long lastCut = System.nanoTime();
+
+  public AdaptiveController(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Runs the operation once the current concurrency allows it.
+   *
+   * @param isCongestion whether a failure of the operation means the domain is overloaded
+   */
+  public <T> T call(Supplier<T> operation, Predicate<RuntimeException> isCongestion) {
+    acquire();
+    long start = System.nanoTime();
+    try {
+      T result = operation.get();
+      onSuccess(start, System.nanoTime() - start);
+      return result;
+    } catch (RuntimeException e) {
+      if (isCongestion.test(e)) {
+        onCongestion(start, e.getMessage());
+      }
+      throw e;
+    } finally {
+      release();
+    }
+  }
+
+  /** Returns the chunk size to use for records with the number of fields. */
+  public synchronized int getChunkSize(int chunkSize, int fields) {
+    int scaled = (int) (chunkSize * chunkScale);
+    int bounded = fields > 0 ? FIELDS_PER_REQUEST / fields : chunkSize;
+    return Math.max(1, Math.min(scaled, bounded));
+  }
+
+  public synchronized int getConcurrency() {
+    return (int) concurrency;
+  }
+
+  private synchronized void acquire() {
+    while (inFlight >= (int) concurrency) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+    inFlight++;
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  private synchronized void onSuccess(long start, long elapsed) {
+    if (samples >= LATENCY_SAMPLES
+        && elapsed > latency * SPIKE_FACTOR
+        && elapsed - latency > SPIKE_MIN_NANOS) {
+      onCongestion(start, String.format("latency %d ms", TimeUnit.NANOSECONDS.toMillis(elapsed)));
+      return;
+    }
+    latency = samples == 0 ? elapsed : latency + (elapsed - latency) * LATENCY_WEIGHT;
+    samples++;
+    // Roughly one more request per round trip of the current concurrency
+    concurrency = Math.min(maxConcurrency, concurrency + 1 / concurrency);
+    chunkScale = Math.min(1, chunkScale + CHUNK_SCALE_STEP);
+  }
+
+  private synchronized void onCongestion(long start, String reason) {
+    // Requests started before the last cut observed the old concurrency, so cut only once for them
+    if (start - lastCut < 0) {
+      return;
+    }
+    lastCut = System.nanoTime();
+    if ((int) concurrency > 1) {
+      concurrency = Math.max(1, concurrency * DECREASE_FACTOR);
+    } else {
+      chunkScale = Math.max(0, chunkScale * DECREASE_FACTOR);
+    }
+    LOGGER.info(
+        String.format(
+            "Congestion detected (%s), concurrency is %d and chunk scale is %.2f",
+            reason, (int) concurrency, chunkScale));
+    notifyAll();
+  }
+}
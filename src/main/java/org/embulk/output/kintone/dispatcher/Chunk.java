@@ -0,0 +1,110 @@
+package org.embulk.output.kintone.dispatcher;
+
+import com.kintone.client.api.common.BulkRequestsRequest;
+import com.kintone.client.api.record.AddRecordsRequest;
+import com.kintone.client.api.record.UpdateRecordsRequest;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import java.util.List;
+import org.embulk.output.kintone.KintoneTransport;
+
+public class Chunk {
+  private final Type type;
+  private final List<?> records;
+
+  private Chunk(Type type, List<?> records) {
+    this.type = type;
+    this.records = records;
+  }
+
+  public static Chunk insert(List<Record> records) {
+    return new Chunk(Type.INSERT, records);
+  }
+
+  public static Chunk update(List<RecordForUpdate> records) {
+    return new Chunk(Type.UPDATE, records);
+  }
+
+  public static Chunk upsert(List<RecordForUpdate> records) {
+    return new Chunk(Type.UPSERT, records);
+  }
+
+  public static Chunk of(Type type, List<?> records) {
+    return new Chunk(type, records);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public List<?> getRecords() {
+    return records;
+  }
+
+  public int size() {
+    return records.size();
+  }
+
+  /**
+   * @return the ids of the added records if inserting, otherwise null
+   */
+  public List<Long> execute(KintoneTransport transport, long app) {
+    switch (type) {
+      case INSERT:
+        return transport.addRecords(app, asRecords());
+      case UPDATE:
+        transport.updateRecords(app, asRecordsForUpdate());
+        return null;
+      case UPSERT:
+        transport.upsertRecords(app, asRecordsForUpdate());
+        return null;
+      default:
+        throw new IllegalStateException("Unknown chunk type " + type);
+    }
+  }
+
+  public void register(BulkRequestsRequest request, long app) {
+    switch (type) {
+      case INSERT:
+        AddRecordsRequest addRecordsRequest = new AddRecordsRequest();
+        addRecordsRequest.setApp(app);
+        addRecordsRequest.setRecords(asRecords());
+        request.registerAddRecordsRequest(addRecordsRequest);
+        break;
+      case UPDATE:
+        request.registerUpdateRecordsRequest(updateRecordsRequest(app, false));
+        break;
+      case UPSERT:
+        request.registerUpdateRecordsRequest(updateRecordsRequest(app, true));
+        break;
+      default:
+        throw new IllegalStateException("Unknown chunk type " + type);
+    }
+  }
+
+  private UpdateRecordsRequest updateRecordsRequest(long app, boolean upsert) {
+    UpdateRecordsRequest request = new UpdateRecordsRequest();
+    request.setApp(app);
+    request.setRecords(asRecordsForUpdate());
+    if (upsert) {
+      request.setUpsert(true);
+    }
+    return request;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Record> asRecords() {
+    return (List<Record>) records;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<RecordForUpdate> asRecordsForUpdate() {
+    return (List<RecordForUpdate>) records;
+  }
+
+  public enum Type {
+    INSERT,
+    UPDATE,
+    UPSERT
+  }
+}
@@ -0,0 +1,301 @@
+package org.embulk.output.kintone.dispatcher;
+
+import com.kintone.client.exception.KintoneApiRuntimeException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import org.embulk.output.kintone.KintoneClient;
+import org.embulk.output.kintone.PluginTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide dispatcher shared by the tasks writing to the same app.
+ *
+ * <p>Tasks share one client, requests to the same domain are capped by a semaphore, and partial
+ * chunks left at the end of tasks are merged into full requests. The dispatcher is reference
+ * counted and closes the client when the last task releases it.
+ */
+public class Dispatcher implements AutoCloseable {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Map<String, Dispatcher> DISPATCHERS = new HashMap<>();
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  private final String key;
+  private final String domain;
+  private final KintoneClient client;
+  private final Semaphore permits;
+  private final int chunkSize;
+  private final long lingerMillis;
+  // Runs the linger timers only, so that a slow request does not delay the other batches
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService senders;
+  private final AdaptiveController controller;
+  private final Map<Chunk.Type, Batch> batches = new EnumMap<>(Chunk.Type.class);
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong mergedChunks = new AtomicLong();
+  private final AtomicLong mergedRequests = new AtomicLong();
+  private int references;
+
+  public static Dispatcher acquire(PluginTask task, Supplier<KintoneClient> client) {
+    String key =
+        String.format(
+            "%s/%s/%d", task.getDomain(), task.getGuestSpaceId().orElse(null), task.getAppId());
+    synchronized (DISPATCHERS) {
+      Dispatcher dispatcher = DISPATCHERS.get(key);
+      if (dispatcher != null) {
+        dispatcher.references++;
+        return dispatcher;
+      }
+    }
+    // Created without the lock, so that the tasks of other apps do not wait for it
+    KintoneClient created = client.get();
+    Dispatcher dispatcher;
+    synchronized (DISPATCHERS) {
+      dispatcher = DISPATCHERS.get(key);
+      if (dispatcher == null) {
+        dispatcher = new Dispatcher(key, created, permits(task), task);
+        DISPATCHERS.put(key, dispatcher);
+        created = null;
+      }
+      dispatcher.references++;
+    }
+    if (created != null) {
+      // Another task created the dispatcher meanwhile
+      created.close();
+    }
+    return dispatcher;
+  }
+
+  /**
+   * Returns the permits of the domain, shared with the open dispatchers of its other apps, so that
+   * they are dropped with the last of them.
+   */
+  private static Semaphore permits(PluginTask task) {
+    return DISPATCHERS.values().stream()
+        .filter(dispatcher -> dispatcher.domain.equals(task.getDomain()))
+        .map(dispatcher -> dispatcher.permits)
+        .findFirst()
+        .orElseGet(() -> new Semaphore(task.getMaxConcurrentRequests(), true));
+  }
+
+  private Dispatcher(String key, KintoneClient client, Semaphore permits, PluginTask task) {
+    this.key = key;
+    domain = task.getDomain();
+    this.client = client;
+    this.permits = permits;
+    chunkSize = task.getChunkSize();
+    lingerMillis = task.getDispatcherLingerMillis();
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(runnable -> newThread(runnable, "dispatcher"));
+    // Requests are capped by the permits of the domain, so senders are not limited here
+    senders = Executors.newCachedThreadPool(runnable -> newThread(runnable, "sender"));
+    controller =
+        task.getAdaptiveConcurrency()
+            ? new AdaptiveController(task.getMaxConcurrentRequests())
+            : null;
+  }
+
+  public KintoneClient client() {
+    return client;
+  }
+
+  /** Returns the controller shared by the tasks, or null if adaptive concurrency is disabled. */
+  public AdaptiveController controller() {
+    return controller;
+  }
+
+  /** Runs the operation once a request permit of the domain is available. */
+  public <T> T call(Supplier<T> operation, LongConsumer onWait) {
+    int depth = queueDepth.incrementAndGet();
+    maxQueueDepth.accumulateAndGet(depth, Math::max);
+    long start = System.nanoTime();
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      queueDepth.decrementAndGet();
+    }
+    long wait = System.nanoTime() - start;
+    waitNanos.addAndGet(wait);
+    requests.incrementAndGet();
+    onWait.accept(wait);
+    try {
+      return operation.get();
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Merges a partial chunk with those of other tasks.
+   *
+   * <p>The merged chunk is sent by the sender of the first chunk once it is full or the linger
+   * time has passed.
+   */
+  public CompletableFuture<Merged> merge(Chunk chunk, Sender sender) {
+    CompletableFuture<Merged> future = new CompletableFuture<>();
+    synchronized (batches) {
+      Batch batch = batches.get(chunk.getType());
+      if (batch != null && batch.size + chunk.size() > chunkSize) {
+        flush(batch);
+        batch = null;
+      }
+      if (batch == null) {
+        Batch created = new Batch(chunk.getType(), sender);
+        created.linger =
+            scheduler.schedule(() -> flush(created), lingerMillis, TimeUnit.MILLISECONDS);
+        batches.put(chunk.getType(), created);
+        batch = created;
+      }
+      batch.add(chunk, future);
+      if (batch.size >= chunkSize) {
+        flush(batch);
+      }
+    }
+    return future;
+  }
+
+  private void flush(Batch batch) {
+    synchronized (batches) {
+      if (batches.get(batch.type) != batch) {
+        return;
+      }
+      batches.remove(batch.type);
+      batch.linger.cancel(false);
+    }
+    mergedChunks.addAndGet(batch.futures.size());
+    mergedRequests.incrementAndGet();
+    senders.execute(batch::send);
+  }
+
+  @Override
+  public void close() {
+    synchronized (DISPATCHERS) {
+      if (--references > 0) {
+        return;
+      }
+      DISPATCHERS.remove(key);
+    }
+    scheduler.shutdown();
+    senders.shutdown();
+    LOGGER.info(
+        String.format(
+            "Dispatched %d requests to %s: max queue depth %d, total wait %d ms, "
+                + "merged %d partial chunks into %d requests",
+            requests.get(),
+            key,
+            maxQueueDepth.get(),
+            TimeUnit.NANOSECONDS.toMillis(waitNanos.get()),
+            mergedChunks.get(),
+            mergedRequests.get()));
+    client.close();
+  }
+
+  private static Thread newThread(Runnable runnable, String name) {
+    Thread thread =
+        new Thread(
+            runnable,
+            String.format("embulk-output-kintone-%s-%d", name, THREAD_NUMBER.incrementAndGet()));
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /** Sends a merged chunk, passing each API error to the consumer before retrying. */
+  @FunctionalInterface
+  public interface Sender {
+    void send(Chunk chunk, Consumer<KintoneApiRuntimeException> onError);
+  }
+
+  /** Result of a merged chunk seen from one of the chunks merged into it. */
+  public static class Merged {
+    private final Chunk chunk;
+    private final int offset;
+    private final List<KintoneApiRuntimeException> errors;
+    private final RuntimeException failure;
+
+    private Merged(
+        Chunk chunk,
+        int offset,
+        List<KintoneApiRuntimeException> errors,
+        RuntimeException failure) {
+      this.chunk = chunk;
+      this.offset = offset;
+      this.errors = errors;
+      this.failure = failure;
+    }
+
+    public Chunk getChunk() {
+      return chunk;
+    }
+
+    /** Index of the first record of the merged chunk belonging to this part. */
+    public int getOffset() {
+      return offset;
+    }
+
+    public List<KintoneApiRuntimeException> getErrors() {
+      return errors;
+    }
+
+    public RuntimeException getFailure() {
+      return failure;
+    }
+  }
+
+  private static class Batch {
+    private final Chunk.Type type;
+    private final Sender sender;
+    private final List<Object> records = new ArrayList<>();
+    private final List<Integer> offsets = new ArrayList<>();
+    private final List<CompletableFuture<Merged>> futures = new ArrayList<>();
+    private ScheduledFuture<?> linger;
+    private int size;
+
+    private Batch(Chunk.Type type, Sender sender) {
+      this.type = type;
+      this.sender = sender;
+    }
+
+    private void add(Chunk chunk, CompletableFuture<Merged> future) {
+      offsets.add(size);
+      futures.add(future);
+      records.addAll(chunk.getRecords());
+      size += chunk.size();
+    }
+
+    private void send() {
+      Chunk chunk = Chunk.of(type, records);
+      List<KintoneApiRuntimeException> errors = new ArrayList<>();
+      RuntimeException failure = null;
+      try {
+        sender.send(chunk, errors::add);
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).complete(new Merged(chunk, offsets.get(i), errors, failure));
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.embulk.output.kintone.dispatcher;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps up to a fixed number of requests in flight on background threads.
+ *
+ * <p>Each request returns a completion which is run on the submitting thread in submission order,
+ * so that error logging and counting stay deterministic. The requests themselves run
+ * concurrently, so writes to the same record may be applied in any order. Submitting blocks while
+ * the window is full.
+ */
+public class RequestWindow implements AutoCloseable {
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  private final int size;
+  private final ExecutorService executor;
+  private final Deque<Future<Runnable>> requests = new ArrayDeque<>();
+
+  public RequestWindow(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size must be positive: " + size);
+    }
+    this.size = size;
+    executor = size == 1 ? null : Executors.newFixedThreadPool(size, RequestWindow::newThread);
+  }
+
+  public void submit(Callable<Runnable> request) {
+    if (executor == null) {
+      complete(call(request));
+      return;
+    }
+    while (requests.size() >= size) {
+      completeOldest();
+    }
+    requests.addLast(executor.submit(request));
+  }
+
+  public void drain() {
+    while (!requests.isEmpty()) {
+      completeOldest();
+    }
+  }
+
+  public int inFlight() {
+    return requests.size();
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    requests.clear();
+  }
+
+  private void completeOldest() {
+    Future<Runnable> request = requests.removeFirst();
+    try {
+      complete(request.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  private static void complete(Runnable completion) {
+    if (completion != null) {
+      completion.run();
+    }
+  }
+
+  private static Runnable call(Callable<Runnable> request) {
+    try {
+      return request.call();
+    } catch (Exception e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable cause) {
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new RuntimeException(cause);
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    Thread thread =
+        new Thread(
+            runnable,
+            String.format("embulk-output-kintone-request-%d", THREAD_NUMBER.incrementAndGet()));
+    thread.setDaemon(true);
+    return thread;
+  }
+}
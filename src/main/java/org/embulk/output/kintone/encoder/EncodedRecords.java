@@ -0,0 +1,153 @@
+package org.embulk.output.kintone.encoder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.embulk.output.kintone.KintoneWritePlan;
+import org.embulk.spi.PageReader;
+
+/**
+ * Body of a request adding records, encoded straight from pages into a buffer.
+ *
+ * <p>The buffer is reused by the following requests once the body has been sent, so that records
+ * are written without the object model of the client. The start of each record is remembered, so
+ * that records failing with errors can be decoded again for the error file.
+ */
+public class EncodedRecords {
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final long app;
+  private final Buffer buffer = new Buffer();
+  private JsonGenerator generator;
+  private int[] offsets = new int[64];
+  private int size;
+  private int end;
+
+  public EncodedRecords(long app) {
+    this.app = app;
+    reset();
+  }
+
+  /** Encodes the current record of the reader following the plan. */
+  public void add(KintoneWritePlan plan, PageReader reader) {
+    try {
+      // The separator of the previous record is written by the generator before this one
+      generator.flush();
+      if (size == offsets.length) {
+        offsets = Arrays.copyOf(offsets, size * 2);
+      }
+      offsets[size++] = buffer.size();
+      generator.writeStartObject();
+      plan.encode(reader, generator);
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Completes the body, after which no records are added until it is reset. */
+  public void finish() {
+    try {
+      generator.flush();
+      end = buffer.size();
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Starts a new body in the same buffer. */
+  public void reset() {
+    buffer.reset();
+    size = 0;
+    try {
+      generator = FACTORY.createGenerator(buffer, JsonEncoding.UTF8);
+      generator.writeStartObject();
+      generator.writeNumberField("app", app);
+      generator.writeArrayFieldStart("records");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public byte[] getBytes() {
+    return buffer.getBytes();
+  }
+
+  public int getLength() {
+    return buffer.size();
+  }
+
+  /** Decodes the finished records as field codes to values, the same as records for errors. */
+  public List<Map<String, Object>> decode() {
+    List<Map<String, Object>> records = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int from = offsets[i];
+      int to = i + 1 < size ? offsets[i + 1] : end;
+      // Skip the separator before the record
+      if (getBytes()[from] == ',') {
+        from++;
+      }
+      try (InputStream in = new ByteArrayInputStream(getBytes(), from, to - from)) {
+        records.add(decode(MAPPER.readTree(in)));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return records;
+  }
+
+  private static Map<String, Object> decode(JsonNode record) {
+    Map<String, Object> fields = new HashMap<>();
+    Iterator<Map.Entry<String, JsonNode>> iterator = record.fields();
+    while (iterator.hasNext()) {
+      Map.Entry<String, JsonNode> field = iterator.next();
+      fields.put(field.getKey(), decodeValue(field.getValue().get("value")));
+    }
+    return fields;
+  }
+
+  private static Object decodeValue(JsonNode value) {
+    if (value == null || value.isNull()) {
+      return null;
+    }
+    if (!value.isArray()) {
+      return value.asText();
+    }
+    List<String> values = new ArrayList<>();
+    // Entities of user, organization and group selections are decoded as their codes
+    value.forEach(
+        element ->
+            values.add(element.has("code") ? element.get("code").asText() : element.asText()));
+    return values;
+  }
+
+  private static class Buffer extends ByteArrayOutputStream {
+    private Buffer() {
+      super(64 * 1024);
+    }
+
+    private byte[] getBytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.embulk.output.kintone.encoder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.kintone.client.model.Group;
+import com.kintone.client.model.Organization;
+import com.kintone.client.model.User;
+import com.kintone.client.model.record.CheckBoxFieldValue;
+import com.kintone.client.model.record.DateFieldValue;
+import com.kintone.client.model.record.DateTimeFieldValue;
+import com.kintone.client.model.record.DropDownFieldValue;
+import com.kintone.client.model.record.FieldValue;
+import com.kintone.client.model.record.GroupSelectFieldValue;
+import com.kintone.client.model.record.LinkFieldValue;
+import com.kintone.client.model.record.MultiLineTextFieldValue;
+import com.kintone.client.model.record.MultiSelectFieldValue;
+import com.kintone.client.model.record.NumberFieldValue;
+import com.kintone.client.model.record.OrganizationSelectFieldValue;
+import com.kintone.client.model.record.RadioButtonFieldValue;
+import com.kintone.client.model.record.RichTextFieldValue;
+import com.kintone.client.model.record.SingleLineTextFieldValue;
+import com.kintone.client.model.record.TimeFieldValue;
+import com.kintone.client.model.record.UserSelectFieldValue;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes field values as the values of kintone requests, the same as the client does.
+ *
+ * <p>Files and subtables are not supported, so that columns of them are written with the object
+ * model of the client instead.
+ */
+public class FieldValueEncoder {
+  private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+  public static void encode(JsonGenerator generator, FieldValue value) throws IOException {
+    if (value instanceof SingleLineTextFieldValue) {
+      generator.writeString(((SingleLineTextFieldValue) value).getValue());
+    } else if (value instanceof MultiLineTextFieldValue) {
+      generator.writeString(((MultiLineTextFieldValue) value).getValue());
+    } else if (value instanceof RichTextFieldValue) {
+      generator.writeString(((RichTextFieldValue) value).getValue());
+    } else if (value instanceof RadioButtonFieldValue) {
+      generator.writeString(((RadioButtonFieldValue) value).getValue());
+    } else if (value instanceof DropDownFieldValue) {
+      generator.writeString(((DropDownFieldValue) value).getValue());
+    } else if (value instanceof LinkFieldValue) {
+      generator.writeString(((LinkFieldValue) value).getValue());
+    } else if (value instanceof NumberFieldValue) {
+      BigDecimal number = ((NumberFieldValue) value).getValue();
+      generator.writeString(number == null ? null : number.toPlainString());
+    } else if (value instanceof CheckBoxFieldValue) {
+      writeStrings(generator, ((CheckBoxFieldValue) value).getValues());
+    } else if (value instanceof MultiSelectFieldValue) {
+      writeStrings(generator, ((MultiSelectFieldValue) value).getValues());
+    } else if (value instanceof DateFieldValue) {
+      LocalDate date = ((DateFieldValue) value).getValue();
+      generator.writeString(date == null ? null : date.toString());
+    } else if (value instanceof TimeFieldValue) {
+      LocalTime time = ((TimeFieldValue) value).getValue();
+      generator.writeString(time == null ? null : TIME.format(time));
+    } else if (value instanceof DateTimeFieldValue) {
+      ZonedDateTime dateTime = ((DateTimeFieldValue) value).getValue();
+      generator.writeString(
+          dateTime == null ? null : DateTimeFormatter.ISO_INSTANT.format(dateTime));
+    } else if (value instanceof UserSelectFieldValue) {
+      generator.writeStartArray();
+      for (User user : ((UserSelectFieldValue) value).getValues()) {
+        writeCode(generator, user.getCode());
+      }
+      generator.writeEndArray();
+    } else if (value instanceof OrganizationSelectFieldValue) {
+      generator.writeStartArray();
+      for (Organization organization : ((OrganizationSelectFieldValue) value).getValues()) {
+        writeCode(generator, organization.getCode());
+      }
+      generator.writeEndArray();
+    } else if (value instanceof GroupSelectFieldValue) {
+      generator.writeStartArray();
+      for (Group group : ((GroupSelectFieldValue) value).getValues()) {
+        writeCode(generator, group.getCode());
+      }
+      generator.writeEndArray();
+    } else {
+      throw new UnsupportedOperationException(
+          "Unsupported field value type: " + value.getClass().getSimpleName());
+    }
+  }
+
+  private static void writeStrings(JsonGenerator generator, List<String> values)
+      throws IOException {
+    generator.writeStartArray();
+    for (String value : values) {
+      generator.writeString(value);
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeCode(JsonGenerator generator, String code) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("code", code);
+    generator.writeEndObject();
+  }
+}
@@ -0,0 +1,114 @@
+package org.embulk.output.kintone.lookup;
+
+import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import com.kintone.client.model.record.Record;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import org.embulk.config.ConfigException;
+import org.embulk.output.kintone.KintoneTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens cursors within a cap of open cursors per domain, shared by the tasks in the JVM.
+ *
+ * <p>Cursors are closed with try-with-resources, which deletes them unless all records have been
+ * read, since kintone deletes such cursors by itself.
+ */
+public class CursorManager {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Map<String, Semaphore> PERMITS = new HashMap<>();
+  public static final int MAX_SIZE = 500;
+  private final Semaphore permits;
+  private final Integer size;
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder openedCursors = new LongAdder();
+
+  /**
+   * @param size the number of records per fetch, or null for the default of kintone
+   */
+  public CursorManager(String domain, int maxOpenCursors, Integer size) {
+    if (maxOpenCursors < 1) {
+      throw new ConfigException("max_open_cursors must be positive.");
+    }
+    if (size != null && (size < 1 || size > MAX_SIZE)) {
+      throw new ConfigException("cursor_fetch_size must be between 1 and " + MAX_SIZE + ".");
+    }
+    synchronized (PERMITS) {
+      permits = PERMITS.computeIfAbsent(domain, key -> new Semaphore(maxOpenCursors, true));
+    }
+    this.size = size;
+  }
+
+  public Cursor open(KintoneTransport client, long app, List<String> fields, String query) {
+    long start = System.nanoTime();
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    waitNanos.add(System.nanoTime() - start);
+    try {
+      String id = client.createCursor(app, fields, query, size == null ? null : (long) size);
+      openedCursors.increment();
+      return new Cursor(client, id);
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /** Total time spent waiting for a cursor slot. */
+  public long getWaitNanos() {
+    return waitNanos.sum();
+  }
+
+  public long getOpenedCursors() {
+    return openedCursors.sum();
+  }
+
+  public class Cursor implements AutoCloseable {
+    private final KintoneTransport client;
+    private final String id;
+    private boolean hasNext = true;
+    private boolean closed;
+
+    private Cursor(KintoneTransport client, String id) {
+      this.client = client;
+      this.id = id;
+    }
+
+    public boolean hasNext() {
+      return hasNext;
+    }
+
+    public List<Record> next() {
+      GetRecordsByCursorResponseBody body = client.getRecordsByCursor(id);
+      hasNext = body.hasNext();
+      return body.getRecords();
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (hasNext) {
+          client.deleteCursor(id);
+        }
+      } catch (RuntimeException e) {
+        LOGGER.warn(String.format("Failed to delete cursor %s", id), e);
+      } finally {
+        permits.release();
+      }
+    }
+  }
+}
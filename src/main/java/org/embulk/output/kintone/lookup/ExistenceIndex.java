@@ -0,0 +1,38 @@
+package org.embulk.output.kintone.lookup;
+
+/**
+ * Index of the id or update key values of existing records, resolving membership in O(1).
+ *
+ * <p>Use {@link #forId(int)} for {@code $id} and {@link #forUpdateKey(boolean, int)} for update
+ * keys.
+ */
+public interface ExistenceIndex {
+  static ExistenceIndex forId(int expectedSize) {
+    return new IdIndex(expectedSize);
+  }
+
+  /**
+   * @param numeric whether the update key is a NUMBER field, whose values are normalized so that
+   *     for example {@code 1}, {@code 1.0} and {@code 1.00} are the same
+   */
+  static ExistenceIndex forUpdateKey(boolean numeric, int expectedSize) {
+    return new UpdateKeyIndex(numeric, expectedSize);
+  }
+
+  /** Returns an index backed by the given one, which is safe to share between threads. */
+  static ExistenceIndex synchronizedIndex(ExistenceIndex index) {
+    return new SynchronizedIndex(index);
+  }
+
+  void add(Object value);
+
+  /** Adds the value of the existing record of the id. */
+  void put(Object value, long id);
+
+  boolean contains(Object value);
+
+  /** Returns the id of the existing record of the value, or null if unknown. */
+  Long getId(Object value);
+
+  int size();
+}
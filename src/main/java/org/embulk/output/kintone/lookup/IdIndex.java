@@ -0,0 +1,52 @@
+package org.embulk.output.kintone.lookup;
+
+public class IdIndex implements ExistenceIndex {
+  private final LongHashSet ids;
+
+  public IdIndex(int expectedSize) {
+    ids = new LongHashSet(expectedSize);
+  }
+
+  @Override
+  public void add(Object value) {
+    Long id = toLong(value);
+    if (id != null) {
+      ids.add(id);
+    }
+  }
+
+  @Override
+  public void put(Object value, long id) {
+    ids.add(id);
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    Long id = toLong(value);
+    return id != null && ids.contains(id);
+  }
+
+  @Override
+  public Long getId(Object value) {
+    return contains(value) ? toLong(value) : null;
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  private static Long toLong(Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    try {
+      return Long.parseLong(value.toString());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.embulk.output.kintone.lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.output.kintone.record.Id;
+
+/** Inclusive range of {@code $id}, read page by page without a cursor. */
+public class IdRange {
+  private final long from;
+  private final long to;
+
+  public IdRange(long from, long to) {
+    this.from = from;
+    this.to = to;
+  }
+
+  /** Splits the range into at most the number of partitions of about the same span. */
+  public static List<IdRange> split(long from, long to, int partitions) {
+    List<IdRange> ranges = new ArrayList<>();
+    long span = to - from + 1;
+    long size = Math.max(1, (span + partitions - 1) / partitions);
+    for (long start = from; start <= to; start += size) {
+      ranges.add(new IdRange(start, Math.min(to, start + size - 1)));
+    }
+    return ranges;
+  }
+
+  public long getFrom() {
+    return from;
+  }
+
+  public long getTo() {
+    return to;
+  }
+
+  /**
+   * Returns the query of the page following the id, ordered by id so that the last id of a page
+   * is where the next page starts.
+   */
+  public String seek(long after, int limit) {
+    return seek(null, after, limit);
+  }
+
+  /** Returns the query of the page following the id, of the records matching the filter. */
+  public String seek(String filter, long after, int limit) {
+    return String.format(
+        "%s%s > %d and %s <= %d order by %s asc limit %d",
+        filter != null ? "(" + filter + ") and " : "",
+        Id.FIELD,
+        Math.max(after, from - 1),
+        Id.FIELD,
+        to,
+        Id.FIELD,
+        limit);
+  }
+
+  /** Returns the query of the first page of the records matching the filter. */
+  public static String head(String filter, int limit) {
+    return String.format("(%s) order by %s asc limit %d", filter, Id.FIELD, limit);
+  }
+
+  /** Returns the query of the record of the largest id matching the filter. */
+  public static String last(String filter) {
+    return String.format("(%s) order by %s desc limit 1", filter, Id.FIELD);
+  }
+}
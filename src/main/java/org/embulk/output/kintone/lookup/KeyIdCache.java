@@ -0,0 +1,69 @@
+package org.embulk.output.kintone.lookup;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of update keys mapped to the ids of their records, known from inserted records and
+ * lookups, so that later records of the same keys are updated by id without looking them up.
+ *
+ * <p>The least recently used entries are evicted beyond the maximum size, or moved to a {@link
+ * SpillTable} if a spill directory is given. Not thread-safe.
+ */
+public class KeyIdCache implements AutoCloseable {
+  private final boolean numeric;
+  private final Map<String, Long> entries;
+  private final SpillTable spill;
+
+  /**
+   * @param numeric whether the update key is a NUMBER field
+   * @param spillDirectory the directory of the files of evicted entries, or null to drop them
+   */
+  public KeyIdCache(boolean numeric, int maxSize, Path spillDirectory) {
+    this.numeric = numeric;
+    spill = spillDirectory != null ? new SpillTable(spillDirectory) : null;
+    entries =
+        new LinkedHashMap<String, Long>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() <= maxSize) {
+              return false;
+            }
+            if (spill != null) {
+              spill.put(eldest.getKey(), eldest.getValue());
+            }
+            return true;
+          }
+        };
+  }
+
+  public void put(Object value, long id) {
+    String key = UpdateKeyIndex.normalize(value, numeric);
+    if (key != null) {
+      entries.put(key, id);
+    }
+  }
+
+  /** Returns the id of the record of the value, or null if not cached. */
+  public Long get(Object value) {
+    String key = UpdateKeyIndex.normalize(value, numeric);
+    Long id = key == null ? null : entries.get(key);
+    if (id == null && key != null && spill != null) {
+      id = spill.get(key);
+    }
+    return id;
+  }
+
+  /** Number of entries in memory and spilled. Spilled keys may be counted twice. */
+  public long size() {
+    return entries.size() + (spill != null ? spill.size() : 0);
+  }
+
+  @Override
+  public void close() {
+    if (spill != null) {
+      spill.close();
+    }
+  }
+}
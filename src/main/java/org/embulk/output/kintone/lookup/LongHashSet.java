@@ -0,0 +1,103 @@
+package org.embulk.output.kintone.lookup;
+
+import java.util.Arrays;
+
+/** Open-addressing set of primitive longs with linear probing. */
+public class LongHashSet {
+  private static final long EMPTY = 0;
+  private static final int MIN_CAPACITY = 16;
+  private long[] table;
+  private int mask;
+  private int size;
+  private boolean containsEmpty;
+
+  public LongHashSet() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongHashSet(int expectedSize) {
+    allocate(capacity(expectedSize));
+  }
+
+  public boolean add(long value) {
+    if (value == EMPTY) {
+      if (containsEmpty) {
+        return false;
+      }
+      containsEmpty = true;
+      size++;
+      return true;
+    }
+    int index = index(value);
+    while (table[index] != EMPTY) {
+      if (table[index] == value) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    table[index] = value;
+    size++;
+    // Keep the load factor at most 1/2 so that probe sequences stay short
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  public boolean contains(long value) {
+    if (value == EMPTY) {
+      return containsEmpty;
+    }
+    int index = index(value);
+    while (table[index] != EMPTY) {
+      if (table[index] == value) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int index(long value) {
+    // Finalizer of MurmurHash3, since ids are sequential
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return (int) hash & mask;
+  }
+
+  private void rehash() {
+    long[] old = table;
+    allocate(old.length * 2);
+    for (long value : old) {
+      if (value != EMPTY) {
+        int index = index(value);
+        while (table[index] != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        table[index] = value;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    table = new long[capacity];
+    Arrays.fill(table, EMPTY);
+    mask = capacity - 1;
+  }
+
+  private static int capacity(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2L) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+}
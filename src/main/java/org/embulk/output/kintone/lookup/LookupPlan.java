@@ -0,0 +1,36 @@
+package org.embulk.output.kintone.lookup;
+
+import java.util.List;
+
+/** Queries looking up the existing records of a window, built by {@link LookupPlanner}. */
+public class LookupPlan {
+  private final String fieldCode;
+  private final List<String> queries;
+  private final int keys;
+  private final int ranges;
+
+  LookupPlan(String fieldCode, List<String> queries, int keys, int ranges) {
+    this.fieldCode = fieldCode;
+    this.queries = queries;
+    this.keys = keys;
+    this.ranges = ranges;
+  }
+
+  public String getFieldCode() {
+    return fieldCode;
+  }
+
+  public List<String> getQueries() {
+    return queries;
+  }
+
+  public boolean isEmpty() {
+    return queries.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d keys of %s in %d queries (%d $id ranges)", keys, fieldCode, queries.size(), ranges);
+  }
+}
@@ -0,0 +1,87 @@
+package org.embulk.output.kintone.lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.embulk.output.kintone.record.Id;
+
+/**
+ * Splits the keys of a window into queries of bounded size.
+ *
+ * <p>Keys are looked up with {@code in} clauses of at most {@link #MAX_IN_VALUES} values and
+ * {@link #MAX_IN_LENGTH} characters. Runs of dense ids are looked up with {@code $id} range
+ * predicates instead, which may read a few records not in the window but keep the query short.
+ */
+public class LookupPlanner {
+  static final int MAX_IN_VALUES = 500;
+  static final int MAX_IN_LENGTH = 8000;
+  // A run of ids becomes a range if it has at least this many ids, at least every other id of it
+  static final int MIN_RANGE_SIZE = 100;
+  static final double MIN_RANGE_DENSITY = 0.5;
+  private static final int MAX_RANGE_GAP = 4;
+
+  private LookupPlanner() {}
+
+  public static LookupPlan planIds(List<Long> ids) {
+    List<Long> sorted = ids.stream().distinct().sorted().collect(Collectors.toList());
+    List<String> queries = new ArrayList<>();
+    List<long[]> ranges = new ArrayList<>();
+    int start = 0;
+    for (int i = 1; i <= sorted.size(); i++) {
+      if (i < sorted.size() && sorted.get(i) - sorted.get(i - 1) <= MAX_RANGE_GAP) {
+        continue;
+      }
+      long first = sorted.get(start);
+      long last = sorted.get(i - 1);
+      int size = i - start;
+      if (size >= MIN_RANGE_SIZE && size >= (last - first + 1) * MIN_RANGE_DENSITY) {
+        ranges.add(new long[] {first, last});
+        queries.add(String.format("%s >= %d and %s <= %d", Id.FIELD, first, Id.FIELD, last));
+      }
+      start = i;
+    }
+    // Ids out of the ranges keep their order, so a small window is looked up as before
+    List<Object> rest =
+        ids.stream().filter(id -> !inRanges(ranges, id)).collect(Collectors.toList());
+    queries.addAll(in(Id.FIELD, rest));
+    return new LookupPlan(Id.FIELD, queries, ids.size(), ranges.size());
+  }
+
+  public static LookupPlan planUpdateKeys(String fieldCode, List<Object> values) {
+    return new LookupPlan(fieldCode, in(fieldCode, values), values.size(), 0);
+  }
+
+  private static List<String> in(String fieldCode, List<?> values) {
+    List<String> queries = new ArrayList<>();
+    List<String> clause = new ArrayList<>();
+    int length = 0;
+    for (Object value : values) {
+      String quoted = "\"" + value + "\"";
+      if (!clause.isEmpty()
+          && (clause.size() >= MAX_IN_VALUES || length + quoted.length() + 1 > MAX_IN_LENGTH)) {
+        queries.add(clause(fieldCode, clause));
+        clause = new ArrayList<>();
+        length = 0;
+      }
+      clause.add(quoted);
+      length += quoted.length() + 1;
+    }
+    if (!clause.isEmpty()) {
+      queries.add(clause(fieldCode, clause));
+    }
+    return queries;
+  }
+
+  private static String clause(String fieldCode, List<String> quoted) {
+    return fieldCode + " in (" + String.join(",", quoted) + ")";
+  }
+
+  private static boolean inRanges(List<long[]> ranges, long id) {
+    for (long[] range : ranges) {
+      if (range[0] <= id && id <= range[1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
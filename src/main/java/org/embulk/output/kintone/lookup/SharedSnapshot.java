@@ -0,0 +1,59 @@
+package org.embulk.output.kintone.lookup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of the existing records of an app, shared by the tasks upserting to it in the JVM.
+ *
+ * <p>The first task to look up existing records downloads the snapshot, while the others wait for
+ * it instead of downloading the app again. The keys inserted by any task are added to it. The
+ * snapshot is reference counted and dropped when the last task releases it, so that tasks started
+ * later download records written since.
+ */
+public class SharedSnapshot implements AutoCloseable {
+  private static final Map<String, SharedSnapshot> SNAPSHOTS = new HashMap<>();
+  private final String key;
+  private ExistenceIndex index;
+  private boolean downloaded;
+  private int references;
+
+  public static SharedSnapshot acquire(
+      String domain, Integer guestSpaceId, long app, String field) {
+    String key = String.format("%s/%s/%d/%s", domain, guestSpaceId, app, field);
+    synchronized (SNAPSHOTS) {
+      SharedSnapshot snapshot = SNAPSHOTS.computeIfAbsent(key, SharedSnapshot::new);
+      snapshot.references++;
+      return snapshot;
+    }
+  }
+
+  private SharedSnapshot(String key) {
+    this.key = key;
+  }
+
+  /**
+   * Returns the snapshot, downloading it unless another task has.
+   *
+   * @param download returns the snapshot, or null if the app is looked up per window instead
+   */
+  public synchronized ExistenceIndex get(Supplier<ExistenceIndex> download) {
+    if (!downloaded) {
+      ExistenceIndex index = download.get();
+      this.index = index == null ? null : ExistenceIndex.synchronizedIndex(index);
+      downloaded = true;
+    }
+    return index;
+  }
+
+  @Override
+  public void close() {
+    synchronized (SNAPSHOTS) {
+      if (--references > 0) {
+        return;
+      }
+      SNAPSHOTS.remove(key);
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package org.embulk.output.kintone.lookup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hash table of keys and ids in temporary files, holding the entries evicted from {@link
+ * KeyIdCache}.
+ *
+ * <p>Slots of the table file are probed linearly, and keys are appended to a separate file so that
+ * a slot matching the hash is confirmed by comparing the key. Slots are read in blocks, so that a
+ * probe usually reads the file once.
+ */
+class SpillTable implements Closeable {
+  // hash (int), offset of the key plus 1 or 0 if empty (long), id (long)
+  private static final int SLOT_SIZE = 20;
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final int GROW_BUFFER_SLOTS = 4096;
+  private static final int PROBE_BUFFER_SLOTS = 64;
+  private static final int KEY_BUFFER_SIZE = 256;
+  private final Path directory;
+  private final Path keysPath;
+  private final FileChannel keys;
+  // Slots read from the position, or none if negative
+  private final ByteBuffer slots = ByteBuffer.allocate(PROBE_BUFFER_SLOTS * SLOT_SIZE);
+  private long slotsPosition = -1;
+  private final ByteBuffer key = ByteBuffer.allocate(KEY_BUFFER_SIZE);
+  private Path tablePath;
+  private FileChannel table;
+  private int capacity;
+  private int size;
+  private long keysLength;
+
+  SpillTable(Path directory) {
+    this.directory = directory;
+    try {
+      Files.createDirectories(directory);
+      keysPath = Files.createTempFile(directory, "embulk-output-kintone-keys", ".tmp");
+      keys = open(keysPath);
+      capacity = INITIAL_CAPACITY;
+      tablePath = Files.createTempFile(directory, "embulk-output-kintone-ids", ".tmp");
+      table = open(tablePath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  void put(String key, long id) {
+    try {
+      if ((size + 1) * 2L > capacity) {
+        grow();
+      }
+      int hash = key.hashCode();
+      for (int index = index(hash, capacity); ; index = (index + 1) & (capacity - 1)) {
+        int slot = read(index);
+        int slotHash = slots.getInt(slot);
+        long offset = slots.getLong(slot + 4);
+        if (offset == 0) {
+          write(table, index, hash, appendKey(key) + 1, id);
+          size++;
+          return;
+        }
+        if (slotHash == hash && readKey(offset - 1).equals(key)) {
+          write(table, index, hash, offset, id);
+          return;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  Long get(String key) {
+    try {
+      int hash = key.hashCode();
+      for (int index = index(hash, capacity); ; index = (index + 1) & (capacity - 1)) {
+        int slot = read(index);
+        long offset = slots.getLong(slot + 4);
+        if (offset == 0) {
+          return null;
+        }
+        if (slots.getInt(slot) == hash) {
+          long id = slots.getLong(slot + 12);
+          if (readKey(offset - 1).equals(key)) {
+            return id;
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  @Override
+  public void close() {
+    try {
+      table.close();
+      keys.close();
+      Files.deleteIfExists(tablePath);
+      Files.deleteIfExists(keysPath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the position of the slot in the buffer, reading the slots from it if not read. */
+  private int read(int index) throws IOException {
+    long position = (long) index * SLOT_SIZE;
+    if (slotsPosition < 0
+        || position < slotsPosition
+        || position >= slotsPosition + slots.capacity()) {
+      slots.clear();
+      int length = Math.max(table.read(slots, position), 0);
+      // Slots beyond the end of the file are empty
+      Arrays.fill(slots.array(), length, slots.capacity(), (byte) 0);
+      slotsPosition = position;
+    }
+    return (int) (position - slotsPosition);
+  }
+
+  private long appendKey(String key) throws IOException {
+    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+    buffer.putInt(bytes.length).put(bytes).flip();
+    long offset = keysLength;
+    while (buffer.hasRemaining()) {
+      keysLength += keys.write(buffer, keysLength);
+    }
+    return offset;
+  }
+
+  private String readKey(long offset) throws IOException {
+    // Most keys are read with their lengths at once
+    key.clear();
+    key.limit((int) Math.min(KEY_BUFFER_SIZE, keysLength - offset));
+    readFully(keys, key, offset);
+    int length = key.getInt(0);
+    if (4 + length <= key.limit()) {
+      return new String(key.array(), 4, length, StandardCharsets.UTF_8);
+    }
+    ByteBuffer bytes = ByteBuffer.allocate(length);
+    readFully(keys, bytes, offset + 4);
+    return new String(bytes.array(), StandardCharsets.UTF_8);
+  }
+
+  private void grow() throws IOException {
+    int newCapacity = capacity * 2;
+    Path newPath = Files.createTempFile(directory, "embulk-output-kintone-ids", ".tmp");
+    FileChannel newTable = open(newPath);
+    ByteBuffer buffer = ByteBuffer.allocate(GROW_BUFFER_SLOTS * SLOT_SIZE);
+    for (long position = 0; position < table.size(); position += buffer.limit()) {
+      buffer.clear();
+      table.read(buffer, position);
+      buffer.flip();
+      buffer.limit(buffer.limit() - buffer.limit() % SLOT_SIZE);
+      for (int i = 0; i < buffer.limit(); i += SLOT_SIZE) {
+        long offset = buffer.getLong(i + 4);
+        if (offset == 0) {
+          continue;
+        }
+        int hash = buffer.getInt(i);
+        int index = index(hash, newCapacity);
+        while (true) {
+          ByteBuffer probe = ByteBuffer.allocate(SLOT_SIZE);
+          if (newTable.read(probe, (long) index * SLOT_SIZE) < SLOT_SIZE
+              || probe.getLong(4) == 0) {
+            break;
+          }
+          index = (index + 1) & (newCapacity - 1);
+        }
+        write(newTable, index, hash, offset, buffer.getLong(i + 12));
+      }
+    }
+    table.close();
+    Files.deleteIfExists(tablePath);
+    slotsPosition = -1;
+    table = newTable;
+    tablePath = newPath;
+    capacity = newCapacity;
+  }
+
+  private static FileChannel open(Path path) throws IOException {
+    return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of spill file");
+      }
+    }
+  }
+
+  private void write(FileChannel file, int index, int hash, long offset, long id)
+      throws IOException {
+    if (file == table) {
+      slotsPosition = -1;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+    buffer.putInt(hash).putLong(offset).putLong(id).flip();
+    long position = (long) index * SLOT_SIZE;
+    while (buffer.hasRemaining()) {
+      position += file.write(buffer, position);
+    }
+  }
+
+  private static int index(int hash, int capacity) {
+    int mixed = hash * 0x9E3779B9;
+    return (mixed ^ (mixed >>> 16)) & (capacity - 1);
+  }
+}
@@ -0,0 +1,34 @@
+package org.embulk.output.kintone.lookup;
+
+public class SynchronizedIndex implements ExistenceIndex {
+  private final ExistenceIndex index;
+
+  public SynchronizedIndex(ExistenceIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public synchronized void add(Object value) {
+    index.add(value);
+  }
+
+  @Override
+  public synchronized void put(Object value, long id) {
+    index.put(value, id);
+  }
+
+  @Override
+  public synchronized boolean contains(Object value) {
+    return index.contains(value);
+  }
+
+  @Override
+  public synchronized Long getId(Object value) {
+    return index.getId(value);
+  }
+
+  @Override
+  public synchronized int size() {
+    return index.size();
+  }
+}
@@ -0,0 +1,75 @@
+package org.embulk.output.kintone.lookup;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+public class UpdateKeyIndex implements ExistenceIndex {
+  private final boolean numeric;
+  // Keys mapped to the ids of their records, or to null if the ids are unknown
+  private final Map<String, Long> keys;
+
+  public UpdateKeyIndex(boolean numeric, int expectedSize) {
+    this.numeric = numeric;
+    keys = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+  }
+
+  @Override
+  public void add(Object value) {
+    String key = normalize(value);
+    if (key != null) {
+      keys.putIfAbsent(key, null);
+    }
+  }
+
+  @Override
+  public void put(Object value, long id) {
+    String key = normalize(value);
+    if (key != null) {
+      keys.put(key, id);
+    }
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    String key = normalize(value);
+    return key != null && keys.containsKey(key);
+  }
+
+  @Override
+  public Long getId(Object value) {
+    String key = normalize(value);
+    return key == null ? null : keys.get(key);
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  private String normalize(Object value) {
+    return normalize(value, numeric);
+  }
+
+  static String normalize(Object value, boolean numeric) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof BigDecimal) {
+      return numeric ? normalize((BigDecimal) value) : ((BigDecimal) value).toPlainString();
+    }
+    String string = value.toString();
+    if (!numeric) {
+      return string;
+    }
+    try {
+      return normalize(new BigDecimal(string.trim()));
+    } catch (NumberFormatException e) {
+      return string;
+    }
+  }
+
+  private static String normalize(BigDecimal value) {
+    return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+  }
+}
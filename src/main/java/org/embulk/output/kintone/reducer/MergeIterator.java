@@ -0,0 +1,61 @@
+package org.embulk.output.kintone.reducer;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Iterates the elements of sorted iterators in the order of the comparator, reading one element
+ * ahead per iterator.
+ *
+ * <p>Equal elements are taken in the order of the iterators, so that the merge is stable.
+ */
+public class MergeIterator<T> implements Iterator<T> {
+  private final PriorityQueue<Head<T>> heads;
+
+  public MergeIterator(List<? extends Iterator<T>> iterators, Comparator<? super T> comparator) {
+    Comparator<Head<T>> headComparator =
+        Comparator.<Head<T>, T>comparing(head -> head.value, comparator)
+            .thenComparingInt(head -> head.index);
+    heads = new PriorityQueue<>(Math.max(iterators.size(), 1), headComparator);
+    for (int index = 0; index < iterators.size(); index++) {
+      Iterator<T> iterator = iterators.get(index);
+      if (iterator.hasNext()) {
+        heads.add(new Head<>(index, iterator, iterator.next()));
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !heads.isEmpty();
+  }
+
+  @Override
+  public T next() {
+    Head<T> head = heads.poll();
+    if (head == null) {
+      throw new NoSuchElementException();
+    }
+    T value = head.value;
+    if (head.iterator.hasNext()) {
+      head.value = head.iterator.next();
+      heads.add(head);
+    }
+    return value;
+  }
+
+  private static class Head<T> {
+    private final int index;
+    private final Iterator<T> iterator;
+    private T value;
+
+    private Head(int index, Iterator<T> iterator, T value) {
+      this.index = index;
+      this.iterator = iterator;
+      this.value = value;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package org.embulk.output.kintone.reducer;
 
 import com.kintone.client.model.record.FieldType;
+import com.kintone.client.model.record.FieldValue;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -25,13 +26,14 @@ import org.msgpack.value.ValueFactory;
 public enum ReduceType {
   BOOLEAN {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier =
-          () -> type.asValue(type.getFieldValue(Boolean.parseBoolean(value), option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return Boolean.parseBoolean(value);
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue((boolean) value, option);
     }
 
     @Override
@@ -41,13 +43,14 @@ public enum ReduceType {
   },
   LONG {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier =
-          () -> type.asValue(type.getFieldValue(Long.parseLong(value), option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return Long.parseLong(value);
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue((long) value, option);
     }
 
     @Override
@@ -57,13 +60,14 @@ public enum ReduceType {
   },
   DOUBLE {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier =
-          () -> type.asValue(type.getFieldValue(Double.parseDouble(value), option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return Double.parseDouble(value);
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue((double) value, option);
     }
 
     @Override
@@ -73,12 +77,14 @@ public enum ReduceType {
   },
   STRING {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier = () -> type.asValue(type.getFieldValue(value, option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return value;
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue((String) value, option);
     }
 
     @Override
@@ -88,13 +94,14 @@ public enum ReduceType {
   },
   TIMESTAMP {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier =
-          () -> type.asValue(type.getFieldValue(Timestamp.ofInstant(Instant.parse(value)), option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return Instant.parse(value);
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue(Timestamp.ofInstant((Instant) value), option);
     }
 
     @Override
@@ -104,13 +111,14 @@ public enum ReduceType {
   },
   JSON {
     @Override
-    public MapValue value(
-        String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
-      KintoneColumnType type =
-          KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
-      Supplier<Value> supplier =
-          () -> type.asValue(type.getFieldValue(Reducer.PARSER.parse(value), option));
-      return value(type, value, supplier);
+    protected Object parse(String value) {
+      return Reducer.PARSER.parse(value);
+    }
+
+    @Override
+    protected FieldValue getFieldValue(
+        KintoneColumnType type, Object value, KintoneColumnOption option) {
+      return type.getFieldValue((Value) value, option);
     }
 
     @Override
@@ -125,8 +133,26 @@ public enum ReduceType {
   private static final Value KEY_SET = ValueFactory.newString("$$key_set");
   private static final Value SORT_VALUE = ValueFactory.newString("$$sort_value");
 
-  public abstract MapValue value(
-      String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client);
+  /** Parses the value from its text, typed the same as the values of {@link Row}. */
+  protected abstract Object parse(String value);
+
+  protected abstract FieldValue getFieldValue(
+      KintoneColumnType type, Object value, KintoneColumnOption option);
+
+  public MapValue value(
+      String value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
+    return value(value == null ? null : parse(value), option, columnName, client);
+  }
+
+  /**
+   * @param value the value typed the same as the values of {@link Row}, converted without its text
+   */
+  public MapValue value(
+      Object value, KintoneColumnOption option, String columnName, Lazy<KintoneClient> client) {
+    KintoneColumnType type =
+        KintoneColumnType.getType(option, ReduceType.getDefaultType(client, option, columnName));
+    return value(type, value, () -> type.asValue(getFieldValue(type, value, option)));
+  }
 
   public abstract Comparator<String> comparator(KintoneSortColumn.Order order);
 
@@ -134,6 +160,22 @@ public enum ReduceType {
     return valueOf(column).comparator(order);
   }
 
+  /**
+   * Compares the values of a column in {@link Row}, which are typed instead of text, with nulls
+   * last.
+   */
+  @SuppressWarnings("unchecked")
+  public static Comparator<Row> rowComparator(Column column, KintoneSortColumn.Order order) {
+    int index = column.getIndex();
+    if (valueOf(column) == JSON) {
+      // Compared by their text, which rows serialize only once
+      return Comparator.comparing(row -> row.getString(index), Comparator.nullsLast(order(order)));
+    }
+    Comparator<Comparable<Object>> comparator = order(order);
+    return Comparator.comparing(
+        row -> (Comparable<Object>) row.get(index), Comparator.nullsLast(comparator));
+  }
+
   public static String asString(Value value, KintoneSortColumn sortColumn) {
     return asString(sortValue(value).map().get(value(sortColumn.getName())));
   }
@@ -169,8 +211,18 @@ public enum ReduceType {
 
   public static MapValue value(
       Column column, List<String> values, KintoneColumnOption option, Lazy<KintoneClient> client) {
-    return valueOf(column)
-        .value(values.get(column.getIndex()), option, fieldCode(column.getName()), client);
+    return value(column, values.get(column.getIndex()), option, client);
+  }
+
+  public static MapValue value(
+      Column column, String value, KintoneColumnOption option, Lazy<KintoneClient> client) {
+    return valueOf(column).value(value, option, fieldCode(column.getName()), client);
+  }
+
+  public static MapValue value(
+      Column column, Row row, KintoneColumnOption option, Lazy<KintoneClient> client) {
+    Object value = row.get(column.getIndex());
+    return valueOf(column).value(value, option, fieldCode(column.getName()), client);
   }
 
   private static String fieldCode(String columnName) {
@@ -178,7 +230,7 @@ public enum ReduceType {
     return m.find() ? m.group(1) : columnName;
   }
 
-  protected static MapValue value(KintoneColumnType type, String value, Supplier<Value> supplier) {
+  private static MapValue value(KintoneColumnType type, Object value, Supplier<Value> supplier) {
     ValueFactory.MapBuilder builder = ValueFactory.newMapBuilder();
     builder.put(TYPE, value(type.name()));
     builder.put(VALUE, value == null ? NIL : supplier.get());
@@ -1,16 +1,14 @@
 package org.embulk.output.kintone.reducer;
 
-import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.lang.invoke.MethodHandles;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import org.apache.commons.csv.CSVPrinter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.embulk.config.TaskReport;
-import org.embulk.output.kintone.KintoneOutputPlugin;
-import org.embulk.spi.ColumnVisitor;
+import org.embulk.output.kintone.PluginTask;
 import org.embulk.spi.Exec;
 import org.embulk.spi.Page;
 import org.embulk.spi.PageReader;
@@ -23,78 +21,76 @@ public class ReducedPageOutput implements TransactionalPageOutput {
   private static final Logger LOGGER =
       LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private final PageReader reader;
-  private final File file;
-  private final CSVPrinter printer;
-  private final ColumnVisitor visitor;
+  private final RowOutputColumnVisitor visitor;
+  private final PluginTask task;
+  private final int taskIndex;
+  private final Comparator<Row> comparator;
+  private final long maxSortMemory;
+  private final List<Row> rows = new ArrayList<>();
+  private final List<File> runs = new ArrayList<>();
+  private long rowsSize;
 
-  public ReducedPageOutput(Schema schema, int taskIndex) {
+  public ReducedPageOutput(PluginTask task, Schema schema, int taskIndex) {
     reader = new PageReader(schema);
-    file = file(taskIndex);
-    printer = printer(file);
-    visitor = new CSVOutputColumnVisitor(reader, printer);
+    visitor = new RowOutputColumnVisitor(reader);
+    this.task = task;
+    this.taskIndex = taskIndex;
+    comparator =
+        Reducer.comparator(task, schema, schema.lookupColumn(task.getReduceKeyName().get()));
+    maxSortMemory = Reducer.maxSortMemory(task);
   }
 
   @Override
   public void add(Page page) {
     reader.setPage(page);
-    while (reader.nextRecord()) visitColumns();
+    while (reader.nextRecord()) {
+      Row row = visitor.read();
+      rows.add(row);
+      rowsSize += row.estimateSize();
+      if (rowsSize >= maxSortMemory) {
+        spill();
+      }
+    }
   }
 
+  /** Sorts the rows left into the last run, which are merged by the {@link Reducer}. */
   @Override
-  public void finish() {}
+  public void finish() {
+    if (!rows.isEmpty()) {
+      spill();
+    }
+    LOGGER.info(String.format("Number of runs sorted: %d", runs.size()));
+  }
 
   @Override
   public void close() {
     reader.close();
-    close(printer);
   }
 
+  /** Deletes the runs sorted so far, which are not merged once the task failed. */
   @Override
-  public void abort() {}
+  public void abort() {
+    runs.forEach(Reducer::delete);
+    runs.clear();
+  }
 
   @Override
   public TaskReport commit() {
-    return Exec.newTaskReport().set("path", file.getPath());
-  }
-
-  private void visitColumns() {
-    reader.getSchema().visitColumns(visitor);
-    println(printer);
-  }
-
-  private static File file(int taskIndex) {
-    try {
-      return File.createTempFile(
-          String.format("%s.", KintoneOutputPlugin.class.getName()),
-          String.format(".%d", taskIndex));
-    } catch (IOException e) {
-      throw new ReduceException(e);
-    }
-  }
-
-  private static CSVPrinter printer(File file) {
-    try {
-      return new CSVPrinter(
-          new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8),
-          Reducer.FORMAT);
-    } catch (IOException e) {
-      throw new ReduceException(e);
-    }
+    return Exec.newTaskReport()
+        .set("paths", runs.stream().map(File::getPath).collect(Collectors.toList()));
   }
 
-  private static void println(CSVPrinter printer) {
-    try {
-      printer.println();
+  private void spill() {
+    rows.sort(comparator);
+    File run = Reducer.file(task, String.format(".%d", taskIndex));
+    try (RowWriter writer = new RowWriter(run, reader.getSchema(), task.getSortTmpCompression())) {
+      rows.forEach(writer::write);
     } catch (IOException e) {
       throw new ReduceException(e);
     }
-  }
-
-  private static void close(Closeable closeable) {
-    try {
-      closeable.close();
-    } catch (IOException e) {
-      LOGGER.warn("close error", e);
-    }
+    LOGGER.info(String.format("Number of rows sorted: %d", rows.size()));
+    runs.add(run);
+    rows.clear();
+    rowsSize = 0;
   }
 }
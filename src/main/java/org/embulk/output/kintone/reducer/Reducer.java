@@ -1,17 +1,15 @@
 package org.embulk.output.kintone.reducer;
 
-import com.google.code.externalsorting.csv.CsvExternalSort;
-import com.google.code.externalsorting.csv.CsvSortOptions;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -19,10 +17,6 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.csv.QuoteMode;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.TaskReport;
 import org.embulk.output.kintone.KintoneClient;
@@ -31,6 +25,7 @@ import org.embulk.output.kintone.KintoneColumnType;
 import org.embulk.output.kintone.KintoneOutputPlugin;
 import org.embulk.output.kintone.KintonePageOutput;
 import org.embulk.output.kintone.KintoneSortColumn;
+import org.embulk.output.kintone.KintoneSortCompression;
 import org.embulk.output.kintone.PluginTask;
 import org.embulk.output.kintone.util.Lazy;
 import org.embulk.spi.Column;
@@ -48,8 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Reducer {
-  protected static final CSVFormat FORMAT =
-      CSVFormat.DEFAULT.builder().setNullString("").setQuoteMode(QuoteMode.ALL_NON_NULL).build();
+  private static final int DEFAULT_MAX_SORT_TMP_FILES = 1024;
   protected static final JsonParser PARSER = new JsonParser();
   private static final Logger LOGGER =
       LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -57,6 +51,8 @@ public class Reducer {
   private final List<Integer> indices;
   private final int size;
   private final Schema schema;
+  // Schema of the runs, without the columns of reduced subtables
+  private final Schema inputSchema;
   private final Lazy<KintoneClient> client;
 
   public Reducer(PluginTask task, Schema schema) {
@@ -67,6 +63,7 @@ public class Reducer {
             .map(Column::getIndex)
             .collect(Collectors.toList());
     size = schema.size();
+    inputSchema = schema;
     this.schema = schema(task, schema);
     this.task.setDerivedColumns(
         range().mapToObj(this.schema::getColumn).collect(Collectors.toSet()));
@@ -74,16 +71,23 @@ public class Reducer {
   }
 
   public ConfigDiff reduce(List<TaskReport> taskReports, Column column) {
-    File merged = file(".merged");
-    merge(taskReports, merged);
-    File sorted = file(".sorted");
-    sort(merged, sorted, sortOptions(task, schema, column));
+    Comparator<Row> comparator = comparator(task, inputSchema, column);
+    // Each task sorted its records into runs, so that they are only merged here
+    List<File> runs =
+        merge(
+            task,
+            runs(taskReports),
+            inputSchema,
+            comparator,
+            Math.max(task.getMaxSortTmpFiles().orElse(DEFAULT_MAX_SORT_TMP_FILES), 2));
+    LOGGER.info(String.format("Number of runs merged: %d", runs.size()));
     AtomicInteger reduced = new AtomicInteger();
-    try (CSVParser parser = parser(sorted);
-        PageBuilder builder = builder(task, schema)) {
-      addRecords(column, reduced, parser, builder);
-    } catch (IOException e) {
-      throw new ReduceException(e);
+    List<RowReader> readers = readers(task, runs, inputSchema);
+    try (PageBuilder builder = builder(task, schema)) {
+      addRecords(column, reduced, new MergeIterator<>(readers, comparator), builder);
+    } finally {
+      readers.forEach(Reducer::close);
+      runs.forEach(Reducer::delete);
     }
     if (reduced.get() % task.getChunkSize() != 0) {
       LOGGER.info(String.format("Number of records reduced: %d", reduced.get()));
@@ -91,11 +95,26 @@ public class Reducer {
     return Exec.newConfigDiff();
   }
 
+  /** Maximum number of bytes of rows a task sorts in memory before spilling them to a run. */
+  static long maxSortMemory(PluginTask task) {
+    // Tasks sort at once, so that they share the memory by default
+    return task.getMaxSortMemory()
+        .orElseGet(() -> estimateAvailableMemory() / Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Orders rows by the reduce key and the sort columns, the same in tasks and in merges. */
+  static Comparator<Row> comparator(PluginTask task, Schema schema, Column column) {
+    List<KintoneSortColumn> sortColumns = new ArrayList<>();
+    sortColumns.add(new KintoneSortColumn(column.getName(), KintoneSortColumn.Order.ASC));
+    sortColumns.addAll(task.getSortColumns());
+    return comparator(schema, sortColumns);
+  }
+
   private void addRecords(
-      Column column, AtomicInteger reduced, CSVParser parser, PageBuilder builder) {
-    List<String> values = null;
-    for (CSVRecord record : parser) {
-      values = addRecord(column, reduced, builder, values, record);
+      Column column, AtomicInteger reduced, Iterator<Row> rows, PageBuilder builder) {
+    Object[] values = null;
+    while (rows.hasNext()) {
+      values = addRecord(column, reduced, builder, values, rows.next());
     }
     if (values != null) {
       addRecord(column, reduced, builder, values, null);
@@ -103,41 +122,41 @@ public class Reducer {
     builder.finish();
   }
 
-  private List<String> addRecord(
-      Column column,
-      AtomicInteger reduced,
-      PageBuilder builder,
-      List<String> values,
-      CSVRecord record) {
-    if (values == null && record == null) {
+  private Object[] addRecord(
+      Column column, AtomicInteger reduced, PageBuilder builder, Object[] values, Row row) {
+    if (values == null && row == null) {
       return null;
     }
     if (values == null) {
-      return values(record);
+      return values(row);
     }
     int index = column.getIndex();
-    if (record != null
-        && values.get(index) != null
-        && record.get(index) != null
-        && values.get(index).equals(record.get(index))) {
-      return values(column, values, record);
+    if (row != null
+        && values[index] != null
+        && row.get(index) != null
+        && values[index].equals(row.get(index))) {
+      return values(column, values, row);
     }
-    schema.visitColumns(new CSVInputColumnVisitor(builder, values(values)));
+    schema.visitColumns(new RowInputColumnVisitor(builder, values(values)));
     builder.addRecord();
     reduced.getAndIncrement();
     if (reduced.get() % task.getChunkSize() == 0) {
       LOGGER.info(String.format("Number of records reduced: %d", reduced.get()));
     }
-    return record == null ? null : values(record);
+    return row == null ? null : values(row);
   }
 
-  private List<String> values(CSVRecord record) {
-    List<String> values = new ArrayList<>(record.toList());
-    range().forEach(index -> values.add(value(record, index).toJson()));
+  private Object[] values(Row row) {
+    Object[] values = new Object[schema.size()];
+    for (int index = 0; index < size; index++) {
+      values[index] = row.get(index);
+    }
+    // Subtables are collected as lists of their rows until the record is added
+    range().forEach(index -> values[index] = new ArrayList<>(value(row, index).list()));
     return values;
   }
 
-  private ArrayValue value(CSVRecord record, int index) {
+  private ArrayValue value(Row row, int index) {
     ValueFactory.MapBuilder builder = ValueFactory.newMapBuilder();
     String name = schema.getColumnName(index);
     Predicate<Column> isId = column -> column.getName().equals(String.format("%s.$id", name));
@@ -145,9 +164,8 @@ public class Reducer {
         schema.getColumns().stream()
             .filter(isId)
             .findFirst()
-            .map(column -> record.get(column.getIndex()))
-            .filter(value -> !value.isEmpty())
-            .map(Long::parseLong)
+            .map(column -> row.get(column.getIndex()))
+            .map(Reducer::id)
             .orElse(null);
     Predicate<Column> predicate =
         column -> column.getName().matches(String.format("^%s\\..*$", name));
@@ -155,11 +173,11 @@ public class Reducer {
         column -> column.getName().replaceFirst(String.format("^%s\\.", name), "");
     schema.getColumns().stream()
         .filter(isId.negate().and(predicate))
-        .forEach(column -> builder.put(key(function, column), value(record, column)));
+        .forEach(column -> builder.put(key(function, column), value(row, column)));
     MapValue value = builder.build();
     return id == null && ReduceType.isEmpty(value)
         ? ValueFactory.emptyArray()
-        : ValueFactory.newArray(ReduceType.value(id, value, sortValue(record, index)));
+        : ValueFactory.newArray(ReduceType.value(id, value, sortValue(row, index)));
   }
 
   private Value key(Function<Column, String> function, Column column) {
@@ -167,50 +185,51 @@ public class Reducer {
     return ReduceType.value(option != null ? option.getFieldCode() : function.apply(column));
   }
 
-  private MapValue value(CSVRecord record, Column column) {
-    return ReduceType.value(
-        column, record.toList(), task.getColumnOptions().get(column.getName()), client);
+  private MapValue value(Row row, Column column) {
+    return ReduceType.value(column, row, task.getColumnOptions().get(column.getName()), client);
   }
 
-  private MapValue sortValue(CSVRecord record, int index) {
+  private static Long id(Object value) {
+    if (value instanceof Long) {
+      return (Long) value;
+    }
+    String text = value.toString();
+    return text.isEmpty() ? null : Long.parseLong(text);
+  }
+
+  private MapValue sortValue(Row row, int index) {
     ValueFactory.MapBuilder builder = ValueFactory.newMapBuilder();
     String name = schema.getColumnName(index);
     Function<KintoneSortColumn, Column> column = sortColumn -> lookupColumn(name, sortColumn);
     Function<KintoneSortColumn, Value> key = sortColumn -> ReduceType.value(sortColumn.getName());
     Function<KintoneSortColumn, Value> value =
-        sortColumn -> ReduceType.value(record.get(column.apply(sortColumn).getIndex()));
+        sortColumn -> ReduceType.value(row.getString(column.apply(sortColumn).getIndex()));
     getSortColumns(index)
         .forEach(sortColumn -> builder.put(key.apply(sortColumn), value.apply(sortColumn)));
     return builder.build();
   }
 
-  private List<String> values(Column column, List<String> values, CSVRecord record) {
-    if (!indices.stream().allMatch(index -> Objects.equals(values.get(index), record.get(index)))) {
+  private Object[] values(Column column, Object[] values, Row row) {
+    if (!indices.stream().allMatch(index -> Objects.equals(values[index], row.get(index)))) {
       throw new ReduceException(
           String.format(
               "Couldn't reduce because column %s is not unique to %s\n%s expected %s but actual %s",
               column.getName(),
               range().mapToObj(schema::getColumnName).collect(Collectors.toList()),
               indices.stream().map(schema::getColumnName).collect(Collectors.toList()),
-              indices.stream().map(values::get).collect(Collectors.toList()),
-              indices.stream().map(record::get).collect(Collectors.toList())));
+              indices.stream().map(index -> values[index]).collect(Collectors.toList()),
+              indices.stream().map(row::get).collect(Collectors.toList())));
     }
-    range().forEach(index -> values.set(index, value(values, record, index).toJson()));
+    range().forEach(index -> list(values, index).addAll(value(row, index).list()));
     return values;
   }
 
-  private ArrayValue value(List<String> values, CSVRecord record, int index) {
-    List<Value> list = new ArrayList<>(list(values, index));
-    list.addAll(value(record, index).list());
-    return list.isEmpty() ? ValueFactory.emptyArray() : ValueFactory.newArray(list);
-  }
-
-  private List<String> values(List<String> values) {
-    range().forEach(index -> values.set(index, value(values, index).toJson()));
+  private Object[] values(Object[] values) {
+    range().forEach(index -> values[index] = value(values, index));
     return values;
   }
 
-  private ArrayValue value(List<String> values, int index) {
+  private ArrayValue value(Object[] values, int index) {
     List<Value> list =
         list(values, index).stream()
             .sorted(comparator(index))
@@ -266,68 +285,74 @@ public class Reducer {
         : Types.STRING;
   }
 
-  private static File file(String suffix) {
+  /** Creates a temporary file of sorted records in the directory of the task. */
+  static File file(PluginTask task, String suffix) {
     try {
-      return File.createTempFile(String.format("%s.", KintoneOutputPlugin.class.getName()), suffix);
+      File directory = null;
+      if (task.getSortTmpDir().isPresent()) {
+        directory = Files.createDirectories(Paths.get(task.getSortTmpDir().get())).toFile();
+      }
+      return File.createTempFile(
+          String.format("%s.", KintoneOutputPlugin.class.getName()), suffix, directory);
     } catch (IOException e) {
       throw new ReduceException(e);
     }
   }
 
-  private static void merge(List<TaskReport> taskReports, File merged) {
-    try (OutputStream out = Files.newOutputStream(merged.toPath())) {
-      long bytes =
-          taskReports.stream()
-              .map(taskReport -> new File(taskReport.get(String.class, "path")).toPath())
-              .mapToLong(source -> copy(source, out))
-              .sum();
-      LOGGER.info(String.format("Number of bytes merged: %d", bytes));
-    } catch (IOException e) {
-      throw new ReduceException(e);
+  private static List<File> runs(List<TaskReport> taskReports) {
+    List<File> runs = new ArrayList<>();
+    for (TaskReport taskReport : taskReports) {
+      for (Object path : taskReport.get(List.class, "paths")) {
+        runs.add(new File(path.toString()));
+      }
     }
+    return runs;
   }
 
-  private static long copy(Path source, OutputStream out) {
-    try {
-      long bytes = Files.copy(source, out);
-      LOGGER.info(String.format("Number of bytes copied: %d", bytes));
-      return bytes;
-    } catch (IOException e) {
-      throw new ReduceException(e);
+  /** Merges the runs in passes until at most the maximum number of them are left. */
+  private static List<File> merge(
+      PluginTask task, List<File> runs, Schema schema, Comparator<Row> comparator, int maxRuns) {
+    while (runs.size() > maxRuns) {
+      List<File> merged = new ArrayList<>();
+      for (int from = 0; from < runs.size(); from += maxRuns) {
+        List<File> group = runs.subList(from, Math.min(from + maxRuns, runs.size()));
+        merged.add(group.size() == 1 ? group.get(0) : mergeRuns(task, group, schema, comparator));
+      }
+      runs = merged;
     }
+    return runs;
   }
 
-  private static void sort(File merged, File sorted, CsvSortOptions sortOptions) {
-    try {
-      int lines =
-          CsvExternalSort.mergeSortedFiles(
-              CsvExternalSort.sortInBatch(merged, null, sortOptions, new ArrayList<>()),
-              sorted,
-              sortOptions,
-              false,
-              Collections.emptyList());
-      LOGGER.info(String.format("Number of lines sorted: %d", lines));
-    } catch (IOException | ClassNotFoundException e) {
+  private static File mergeRuns(
+      PluginTask task, List<File> runs, Schema schema, Comparator<Row> comparator) {
+    File merged = file(task, ".merged");
+    List<RowReader> readers = readers(task, runs, schema);
+    long rows = 0;
+    try (RowWriter writer = new RowWriter(merged, schema, task.getSortTmpCompression())) {
+      Iterator<Row> iterator = new MergeIterator<>(readers, comparator);
+      while (iterator.hasNext()) {
+        writer.write(iterator.next());
+        rows++;
+      }
+    } catch (IOException e) {
       throw new ReduceException(e);
+    } finally {
+      readers.forEach(Reducer::close);
     }
+    runs.forEach(Reducer::delete);
+    LOGGER.info(String.format("Number of rows merged: %d", rows));
+    return merged;
   }
 
-  private static CsvSortOptions sortOptions(PluginTask task, Schema schema, Column column) {
-    List<KintoneSortColumn> sortColumns = new ArrayList<>();
-    sortColumns.add(new KintoneSortColumn(column.getName(), KintoneSortColumn.Order.ASC));
-    sortColumns.addAll(task.getSortColumns());
-    return new CsvSortOptions.Builder(
-            comparator(schema, sortColumns),
-            task.getMaxSortTmpFiles().orElse(CsvExternalSort.DEFAULTMAXTEMPFILES),
-            task.getMaxSortMemory().orElse(CsvExternalSort.estimateAvailableMemory()))
-        .charset(StandardCharsets.UTF_8)
-        .format(FORMAT)
-        .build();
-  }
-
-  private static Comparator<CSVRecord> comparator(
-      Schema schema, List<KintoneSortColumn> sortColumns) {
-    Function<KintoneSortColumn, Comparator<CSVRecord>> function =
+  private static List<RowReader> readers(PluginTask task, List<File> runs, Schema schema) {
+    KintoneSortCompression compression = task.getSortTmpCompression();
+    return runs.stream()
+        .map(run -> new RowReader(run, schema, compression))
+        .collect(Collectors.toList());
+  }
+
+  private static Comparator<Row> comparator(Schema schema, List<KintoneSortColumn> sortColumns) {
+    Function<KintoneSortColumn, Comparator<Row>> function =
         sortColumn -> comparator(schema, sortColumn);
     return sortColumns.stream()
         .skip(1)
@@ -335,18 +360,27 @@ public class Reducer {
         .reduce(function.apply(sortColumns.get(0)), Comparator::thenComparing);
   }
 
-  private static Comparator<CSVRecord> comparator(Schema schema, KintoneSortColumn sortColumn) {
+  private static Comparator<Row> comparator(Schema schema, KintoneSortColumn sortColumn) {
     Column column = schema.lookupColumn(sortColumn.getName());
-    return Comparator.comparing(
-        record -> record.get(column.getIndex()),
-        Comparator.nullsLast(ReduceType.comparator(column, sortColumn.getOrder())));
+    return ReduceType.rowComparator(column, sortColumn.getOrder());
+  }
+
+  private static long estimateAvailableMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
   }
 
-  private static CSVParser parser(File sorted) {
+  private static void close(Closeable closeable) {
     try {
-      return CSVParser.parse(sorted, StandardCharsets.UTF_8, FORMAT);
+      closeable.close();
     } catch (IOException e) {
-      throw new ReduceException(e);
+      LOGGER.warn("close error", e);
+    }
+  }
+
+  static void delete(File file) {
+    if (!file.delete()) {
+      LOGGER.warn(String.format("Couldn't delete %s", file));
     }
   }
 
@@ -354,7 +388,8 @@ public class Reducer {
     return new PageBuilder(Exec.getBufferAllocator(), schema, new KintonePageOutput(task, schema));
   }
 
-  private static List<Value> list(List<String> values, int index) {
-    return PARSER.parse(values.get(index)).asArrayValue().list();
+  @SuppressWarnings("unchecked")
+  private static List<Value> list(Object[] values, int index) {
+    return (List<Value>) values[index];
   }
 }
@@ -0,0 +1,85 @@
+package org.embulk.output.kintone.reducer;
+
+import java.time.Instant;
+import org.msgpack.value.Value;
+
+/**
+ * Values of a record to reduce, typed the same as their columns.
+ *
+ * <p>Values are {@link Boolean}, {@link Long}, {@link Double}, {@link String}, {@link Instant} or
+ * {@link Value} for the columns of the types, or null.
+ */
+public class Row {
+  private final Object[] values;
+  // Text of the JSON values, serialized when first needed
+  private String[] texts;
+
+  public Row(Object[] values) {
+    this.values = values;
+  }
+
+  public Object get(int index) {
+    return values[index];
+  }
+
+  /** Returns the value as text, the same as the value of the column written in CSV. */
+  public String getString(int index) {
+    Object value = values[index];
+    if (value == null) {
+      return null;
+    }
+    if (!(value instanceof Value)) {
+      return value.toString();
+    }
+    // Kept, since rows are compared by the text of their JSON values while sorted
+    if (texts == null) {
+      texts = new String[values.length];
+    }
+    if (texts[index] == null) {
+      texts[index] = ((Value) value).toJson();
+    }
+    return texts[index];
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  /** Approximate number of bytes of the row in memory, to spill rows sorted so far in time. */
+  public long estimateSize() {
+    long size = 16 + 8L * values.length;
+    for (Object value : values) {
+      if (value instanceof String) {
+        size += 40 + 2L * ((String) value).length();
+      } else if (value instanceof Value) {
+        size += estimateSize((Value) value);
+      } else if (value != null) {
+        size += 24;
+      }
+    }
+    return size;
+  }
+
+  /** Estimated from the structure of the value, without serializing it. */
+  private static long estimateSize(Value value) {
+    switch (value.getValueType()) {
+      case STRING:
+      case BINARY:
+        return 40 + value.asRawValue().asByteBuffer().remaining();
+      case ARRAY:
+        long arraySize = 24;
+        for (Value element : value.asArrayValue()) {
+          arraySize += 8 + estimateSize(element);
+        }
+        return arraySize;
+      case MAP:
+        long mapSize = 24;
+        for (Value element : value.asMapValue().getKeyValueArray()) {
+          mapSize += 8 + estimateSize(element);
+        }
+        return mapSize;
+      default:
+        return 24;
+    }
+  }
+}
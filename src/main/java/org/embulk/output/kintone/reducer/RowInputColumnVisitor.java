@@ -1,78 +1,81 @@
 package org.embulk.output.kintone.reducer;
 
 import java.time.Instant;
-import java.util.List;
 import org.embulk.spi.Column;
 import org.embulk.spi.ColumnVisitor;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.time.Timestamp;
+import org.msgpack.value.Value;
 
-public class CSVInputColumnVisitor implements ColumnVisitor {
+public class RowInputColumnVisitor implements ColumnVisitor {
   private final PageBuilder builder;
-  private final List<String> values;
+  private final Object[] values;
 
-  public CSVInputColumnVisitor(PageBuilder builder, List<String> values) {
+  public RowInputColumnVisitor(PageBuilder builder, Object[] values) {
     this.builder = builder;
     this.values = values;
   }
 
   @Override
   public void booleanColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
     } else {
-      builder.setBoolean(column, Boolean.parseBoolean(value));
+      builder.setBoolean(column, (Boolean) value);
     }
   }
 
   @Override
   public void longColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
     } else {
-      builder.setLong(column, Long.parseLong(value));
+      builder.setLong(column, (Long) value);
     }
   }
 
   @Override
   public void doubleColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
     } else {
-      builder.setDouble(column, Double.parseDouble(value));
+      builder.setDouble(column, (Double) value);
     }
   }
 
   @Override
   public void stringColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
+    } else if (value instanceof Value) {
+      // Reduced subtables of columns which are not written as SUBTABLE
+      builder.setString(column, ((Value) value).toJson());
     } else {
-      builder.setString(column, value);
+      builder.setString(column, (String) value);
     }
   }
 
   @Override
   public void timestampColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
     } else {
-      builder.setTimestamp(column, Timestamp.ofInstant(Instant.parse(value)));
+      builder.setTimestamp(column, Timestamp.ofInstant((Instant) value));
     }
   }
 
   @Override
   public void jsonColumn(Column column) {
-    String value = values.get(column.getIndex());
+    Object value = values[column.getIndex()];
     if (value == null) {
       builder.setNull(column);
     } else {
-      builder.setJson(column, Reducer.PARSER.parse(value));
+      builder.setJson(column, (Value) value);
     }
   }
 }
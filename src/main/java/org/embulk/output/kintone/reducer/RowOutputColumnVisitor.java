@@ -0,0 +1,63 @@
+package org.embulk.output.kintone.reducer;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.PageReader;
+
+public class RowOutputColumnVisitor implements ColumnVisitor {
+  private final PageReader reader;
+  private Object[] values;
+
+  public RowOutputColumnVisitor(PageReader reader) {
+    this.reader = reader;
+  }
+
+  /** Reads the current record of the reader as a row. */
+  public Row read() {
+    values = new Object[reader.getSchema().size()];
+    reader.getSchema().visitColumns(this);
+    return new Row(values);
+  }
+
+  @Override
+  public void booleanColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getBoolean(column);
+    }
+  }
+
+  @Override
+  public void longColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getLong(column);
+    }
+  }
+
+  @Override
+  public void doubleColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getDouble(column);
+    }
+  }
+
+  @Override
+  public void stringColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getString(column);
+    }
+  }
+
+  @Override
+  public void timestampColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getTimestamp(column).getInstant();
+    }
+  }
+
+  @Override
+  public void jsonColumn(Column column) {
+    if (!reader.isNull(column)) {
+      values[column.getIndex()] = reader.getJson(column);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package org.embulk.output.kintone.reducer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.embulk.output.kintone.KintoneSortCompression;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.Schema;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+/** Reads rows written by {@link RowWriter} with the same schema. */
+public class RowReader implements Iterator<Row>, Closeable {
+  private final Schema schema;
+  private final MessageUnpacker unpacker;
+  private final ColumnVisitor visitor = new Visitor();
+  private Object[] values;
+
+  public RowReader(File file, Schema schema, KintoneSortCompression compression) {
+    this.schema = schema;
+    try {
+      InputStream in = compression.decompress(Files.newInputStream(file.toPath()));
+      unpacker = MessagePack.newDefaultUnpacker(new BufferedInputStream(in, 64 * 1024));
+    } catch (IOException e) {
+      throw new ReduceException(e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      return unpacker.hasNext();
+    } catch (IOException e) {
+      throw new ReduceException(e);
+    }
+  }
+
+  @Override
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      int size = unpacker.unpackArrayHeader();
+      if (size != schema.size()) {
+        throw new ReduceException(
+            String.format("Row of %d values is read for %d columns", size, schema.size()));
+      }
+    } catch (IOException e) {
+      throw new ReduceException(e);
+    }
+    values = new Object[schema.size()];
+    schema.visitColumns(visitor);
+    return new Row(values);
+  }
+
+  @Override
+  public void close() throws IOException {
+    unpacker.close();
+  }
+
+  private class Visitor implements ColumnVisitor {
+    @Override
+    public void booleanColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          values[column.getIndex()] = unpacker.unpackBoolean();
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void longColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          values[column.getIndex()] = unpacker.unpackLong();
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void doubleColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          values[column.getIndex()] = unpacker.unpackDouble();
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          values[column.getIndex()] = unpacker.unpackString();
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void timestampColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          long seconds = unpacker.unpackLong();
+          values[column.getIndex()] = Instant.ofEpochSecond(seconds, unpacker.unpackInt());
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void jsonColumn(Column column) {
+      try {
+        if (!unpackNil()) {
+          values[column.getIndex()] = unpacker.unpackValue();
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    private boolean unpackNil() throws IOException {
+      if (unpacker.getNextFormat() != MessageFormat.NIL) {
+        return false;
+      }
+      unpacker.unpackNil();
+      return true;
+    }
+  }
+}
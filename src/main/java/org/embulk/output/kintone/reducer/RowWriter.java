@@ -0,0 +1,143 @@
+package org.embulk.output.kintone.reducer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.time.Instant;
+import org.embulk.output.kintone.KintoneSortCompression;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.Schema;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes rows to a file in MessagePack, each as an array of the values of the columns.
+ *
+ * <p>Values are written as their types, so that rows are read back by {@link RowReader} without
+ * parsing text. Timestamps are written as the seconds and the nanoseconds of their instants.
+ */
+public class RowWriter implements Closeable {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private final File file;
+  private final Schema schema;
+  private final MessagePacker packer;
+  private final ColumnVisitor visitor = new Visitor();
+  private Row row;
+
+  public RowWriter(File file, Schema schema, KintoneSortCompression compression) {
+    this.file = file;
+    this.schema = schema;
+    try {
+      OutputStream out = compression.compress(Files.newOutputStream(file.toPath()));
+      packer = MessagePack.newDefaultPacker(new BufferedOutputStream(out, 64 * 1024));
+    } catch (IOException e) {
+      throw new ReduceException(e);
+    }
+  }
+
+  public void write(Row row) {
+    this.row = row;
+    try {
+      packer.packArrayHeader(schema.size());
+    } catch (IOException e) {
+      throw new ReduceException(e);
+    }
+    schema.visitColumns(visitor);
+  }
+
+  @Override
+  public void close() throws IOException {
+    packer.close();
+    LOGGER.info(
+        String.format(
+            "Number of bytes written to %s: %d, compressed to %d",
+            file, packer.getTotalWrittenBytes(), file.length()));
+  }
+
+  private class Visitor implements ColumnVisitor {
+    @Override
+    public void booleanColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          packer.packBoolean((Boolean) row.get(column.getIndex()));
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void longColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          packer.packLong((Long) row.get(column.getIndex()));
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void doubleColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          packer.packDouble((Double) row.get(column.getIndex()));
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void stringColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          packer.packString((String) row.get(column.getIndex()));
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void timestampColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          Instant instant = (Instant) row.get(column.getIndex());
+          packer.packLong(instant.getEpochSecond());
+          packer.packInt(instant.getNano());
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    @Override
+    public void jsonColumn(Column column) {
+      try {
+        if (!packNil(column)) {
+          ((Value) row.get(column.getIndex())).writeTo(packer);
+        }
+      } catch (IOException e) {
+        throw new ReduceException(e);
+      }
+    }
+
+    private boolean packNil(Column column) throws IOException {
+      if (row.get(column.getIndex()) != null) {
+        return false;
+      }
+      packer.packNil();
+      return true;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package org.embulk.output.kintone.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * A lazy value initialized on a thread of its own as soon as it is created, so that {@link #get()}
+ * waits only for what is left of the initialization.
+ *
+ * <p>Errors of the initialization are thrown by {@link #get()}.
+ */
+public class EagerLazy<T extends AutoCloseable> extends Lazy<T> {
+  private final FutureTask<T> future;
+
+  public EagerLazy(Supplier<T> supplier, String threadName) {
+    future = new FutureTask<>(supplier::get);
+    Thread thread = new Thread(future, threadName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  protected T initialValue() {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.embulk.output.kintone.util;
+
+import java.util.function.LongFunction;
+
+/**
+ * Direct-mapped cache of values computed from long keys, such as dates of epoch days.
+ *
+ * <p>Each key has a single slot, replaced by the latest key mapped to it, so that the cache stays
+ * bounded and a lookup costs an array access. Not thread-safe.
+ */
+public class TemporalCache<T> {
+  private final long[] keys;
+  private final Object[] values;
+  private final int mask;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param size the number of slots, rounded up to a power of 2
+   */
+  public TemporalCache(int size) {
+    int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(long key, LongFunction<T> compute) {
+    long mixed = key * 0x9E3779B97F4A7C15L;
+    int index = (int) (mixed ^ (mixed >>> 32)) & mask;
+    Object value = values[index];
+    if (value != null && keys[index] == key) {
+      hits++;
+      return (T) value;
+    }
+    misses++;
+    T computed = compute.apply(key);
+    keys[index] = key;
+    values[index] = computed;
+    return computed;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+}
@@ -0,0 +1,63 @@
+package org.embulk.output.kintone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.kintone.client.KintoneClient;
+import com.kintone.client.RecordClient;
+import com.kintone.client.api.record.CreateCursorRequest;
+import com.kintone.client.api.record.CreateCursorResponseBody;
+import com.kintone.client.api.record.UpdateRecordsRequest;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import com.kintone.client.model.record.UpdateKey;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ClientTransportTest {
+  private static final List<String> FIELDS = Collections.singletonList("key");
+
+  @Test
+  public void testCreateCursor() {
+    RecordClient recordClient = mock(RecordClient.class);
+    when(recordClient.createCursor(eq(1L), eq(FIELDS), eq(""))).thenReturn("id");
+    CreateCursorResponseBody body = mock(CreateCursorResponseBody.class);
+    when(body.getId()).thenReturn("sized");
+    when(recordClient.createCursor(any(CreateCursorRequest.class))).thenReturn(body);
+    ClientTransport transport = new ClientTransport(client(recordClient));
+    assertThat(transport.createCursor(1L, FIELDS, "", null), is("id"));
+    assertThat(transport.createCursor(1L, FIELDS, "key = 1", 100L), is("sized"));
+    ArgumentCaptor<CreateCursorRequest> request =
+        ArgumentCaptor.forClass(CreateCursorRequest.class);
+    verify(recordClient).createCursor(request.capture());
+    assertThat(request.getValue().getSize(), is(100L));
+    assertThat(request.getValue().getQuery(), is("key = 1"));
+  }
+
+  @Test
+  public void testUpsertRecords() {
+    RecordClient recordClient = mock(RecordClient.class);
+    List<RecordForUpdate> records =
+        Collections.singletonList(new RecordForUpdate(new UpdateKey("key", "value"), new Record()));
+    new ClientTransport(client(recordClient)).upsertRecords(1L, records);
+    ArgumentCaptor<UpdateRecordsRequest> captor =
+        ArgumentCaptor.forClass(UpdateRecordsRequest.class);
+    verify(recordClient).updateRecords(captor.capture());
+    assertThat(captor.getValue().getApp(), is(1L));
+    assertThat(captor.getValue().getRecords(), is(records));
+    assertThat(captor.getValue().getUpsert(), is(true));
+  }
+
+  private static KintoneClient client(RecordClient recordClient) {
+    KintoneClient client = mock(KintoneClient.class);
+    when(client.record()).thenReturn(recordClient);
+    return client;
+  }
+}
@@ -0,0 +1,176 @@
+package org.embulk.output.kintone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kintone.client.exception.KintoneApiRuntimeException;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import com.kintone.client.model.record.SingleLineTextFieldValue;
+import com.kintone.client.model.record.UpdateKey;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapper;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpTransportTest extends TestKintoneOutputPlugin {
+  private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder().addDefaultModules().build();
+  private static final ConfigMapper CONFIG_MAPPER = CONFIG_MAPPER_FACTORY.createConfigMapper();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private HttpServer server;
+  private volatile int status;
+  private volatile String response;
+  private volatile String method;
+  private volatile URI uri;
+  private volatile Headers headers;
+  private volatile String body;
+
+  @Before
+  public void startServer() throws IOException {
+    status = 200;
+    response = "{}";
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          method = exchange.getRequestMethod();
+          uri = exchange.getRequestURI();
+          headers = exchange.getRequestHeaders();
+          body = read(exchange.getRequestBody());
+          byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(status, bytes.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testAddRecords() throws IOException {
+    HttpTransport transport =
+        transport(config("basic_auth_username: user", "basic_auth_password: pass"));
+    response = "{\"ids\":[\"1\",\"2\"],\"revisions\":[\"1\",\"1\"]}";
+    List<Long> ids = transport.addRecords(0, Collections.singletonList(record("x")));
+    assertThat(ids, contains(1L, 2L));
+    assertThat(method, is("POST"));
+    assertThat(uri.getPath(), is("/k/v1/records.json"));
+    assertThat(headers.getFirst("X-Cybozu-API-Token"), is("token"));
+    assertThat(headers.getFirst("Authorization"), is("Basic " + encode("user:pass")));
+    assertThat(headers.getFirst("Content-Type"), is("application/json"));
+    assertBody("{\"app\":0,\"records\":[{\"a\":{\"value\":\"x\"}}]}");
+  }
+
+  @Test
+  public void testUpdateRecords() throws IOException {
+    HttpTransport transport = transport(config("username: username", "password: password"));
+    transport.updateRecords(0, Collections.singletonList(new RecordForUpdate(1L, record("x"))));
+    assertThat(method, is("PUT"));
+    assertThat(uri.getPath(), is("/k/v1/records.json"));
+    // The password is preferred to the token, as with the client
+    assertThat(headers.getFirst("X-Cybozu-Authorization"), is(encode("username:password")));
+    assertThat(headers.getFirst("X-Cybozu-API-Token"), is((String) null));
+    assertBody("{\"app\":0,\"records\":[{\"id\":1,\"record\":{\"a\":{\"value\":\"x\"}}}]}");
+  }
+
+  @Test
+  public void testUpsertRecords() throws IOException {
+    HttpTransport transport = transport(config());
+    UpdateKey key = new UpdateKey("key", new BigDecimal("1.0"));
+    transport.upsertRecords(0, Collections.singletonList(new RecordForUpdate(key, record("x"))));
+    assertThat(method, is("PUT"));
+    assertThat(uri.getPath(), is("/k/v1/records.json"));
+    // spotless:off
+    assertBody("{\"app\":0,\"upsert\":true,\"records\":[{\"updateKey\":{\"field\":\"key\",\"value\":\"1.0\"},\"record\":{\"a\":{\"value\":\"x\"}}}]}");
+    // spotless:on
+  }
+
+  @Test
+  public void testGuestSpace() {
+    HttpTransport transport = transport(config("guest_space_id: 5"));
+    response = "{\"revision\":\"3\"}";
+    assertThat(transport.getAppRevision(0), is(3L));
+    assertThat(method, is("GET"));
+    assertThat(uri.getPath(), is("/k/guest/5/v1/app/settings.json"));
+    assertThat(uri.getQuery(), is("app=0"));
+  }
+
+  @Test
+  public void testDeleteCursor() {
+    HttpTransport transport = transport(config());
+    transport.deleteCursor("a b&c");
+    assertThat(method, is("DELETE"));
+    assertThat(uri.getPath(), is("/k/v1/records/cursor.json"));
+    assertThat(uri.getRawQuery(), is("id=a+b%26c"));
+  }
+
+  @Test
+  public void testError() {
+    HttpTransport transport = transport(config());
+    status = 400;
+    response = "{\"code\":\"CB_VA01\",\"id\":\"id\",\"message\":\"message\"}";
+    KintoneApiRuntimeException e =
+        assertThrows(
+            KintoneApiRuntimeException.class,
+            () -> transport.addRecords(0, Collections.singletonList(record("x"))));
+    assertThat(e.getStatusCode(), is(400));
+    assertThat(e.getContent(), is(response));
+  }
+
+  private HttpTransport transport(ConfigSource config) {
+    config = loadConfigYaml("client/config.yml").merge(config);
+    PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+    String origin = "http://localhost:" + server.getAddress().getPort();
+    return new HttpTransport(new HttpSender(task, origin), mock(KintoneTransport.class));
+  }
+
+  private void assertBody(String expected) throws IOException {
+    JsonNode actual = MAPPER.readTree(body);
+    assertThat(actual, is(MAPPER.readTree(expected)));
+  }
+
+  private static Record record(String value) {
+    Record record = new Record();
+    record.putField("a", new SingleLineTextFieldValue(value));
+    return record;
+  }
+
+  private static String encode(String credentials) {
+    return Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+      out.write(buffer, 0, n);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
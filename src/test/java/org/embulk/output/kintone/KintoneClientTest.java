@@ -2,9 +2,12 @@ package org.embulk.output.kintone;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThrows;
 
+import com.kintone.client.model.record.FieldType;
 import java.util.Collections;
+import java.util.Map;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.output.kintone.util.Lazy;
@@ -85,6 +88,39 @@ public class KintoneClientTest extends TestKintoneOutputPlugin {
     assertConfigException("The id column must be 'long'.", id(Types.STRING));
   }
 
+  @Test
+  public void testFieldTypes() throws Exception {
+    merge(config("mode: insert"));
+    merge(config("update_key: null"));
+    MockClient mockClient =
+        new MockClient(
+            config.get(String.class, "domain"),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            "");
+    mockClient.run(
+        () -> {
+          Map<String, FieldType> fieldTypes =
+              KintoneClient.getFieldTypes(task(), schema(builder()));
+          assertThat(fieldTypes.get("long_number"), is(FieldType.NUMBER));
+          assertThat(fieldTypes.containsKey("non_existing_field"), is(true));
+          assertThat(fieldTypes.get("non_existing_field"), nullValue());
+        });
+    // The task is not validated again, and the fields not in the task are fetched
+    merge(config("update_key: long_number"));
+    PluginTask task = task();
+    task.setFieldTypes(Collections.singletonMap("long_number", FieldType.DATE));
+    try (Lazy<KintoneClient> client = KintoneClient.lazy(() -> task, schema(builder()))) {
+      mockClient.run(
+          () -> {
+            assertThat(client.get().getFieldType("long_number"), is(FieldType.DATE));
+            // spotless:off
+            assertThat(client.get().getFieldType("string_single_line_text"), is(FieldType.SINGLE_LINE_TEXT));
+            // spotless:on
+          });
+    }
+  }
+
   private void assertConfigException(String message) {
     assertConfigException(message, builder());
   }
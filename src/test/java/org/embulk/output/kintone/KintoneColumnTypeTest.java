@@ -209,4 +209,53 @@ public class KintoneColumnTypeTest {
   public static ZonedDateTime dateTime(CharSequence text) {
     return ZonedDateTime.parse(text);
   }
+
+  @Test
+  public void testConvertNumber() {
+    KintoneColumnFormat format = KintoneColumnFormat.of(null);
+    // spotless:off
+    // Typed conversions are the same as those of the string representations
+    for (double value : new double[] {0.0d, -1.5d, 1.0e10d, 1.0e-7d, 12345.678d}) {
+      assertThat(((NumberFieldValue) NUMBER.convert(value, format)).getValue(), is(new BigDecimal(String.valueOf(value))));
+    }
+    for (long value : new long[] {0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+      assertThat(((NumberFieldValue) NUMBER.convert(value, format)).getValue(), is(new BigDecimal(String.valueOf(value))));
+    }
+    assertThat(((NumberFieldValue) NUMBER.convert(true, format)).getValue(), is(new BigDecimal("1")));
+    // spotless:on
+  }
+
+  @Test
+  public void testConvertCached() {
+    KintoneColumnFormat format = KintoneColumnFormat.of(null, 16);
+    KintoneColumnFormat uncached = KintoneColumnFormat.of(null);
+    // spotless:off
+    for (long value : new long[] {0L, 86399L, 86400L, -1L, 1704164645L, 1704164645L}) {
+      assertThat(((DateFieldValue) DATE.convert(value, format)).getValue(), is(((DateFieldValue) DATE.convert(value, uncached)).getValue()));
+      assertThat(((TimeFieldValue) TIME.convert(value, format)).getValue(), is(((TimeFieldValue) TIME.convert(value, uncached)).getValue()));
+      assertThat(((DateTimeFieldValue) DATETIME.convert(value, format)).getValue(), is(((DateTimeFieldValue) DATETIME.convert(value, uncached)).getValue()));
+    }
+    Timestamp fraction = Timestamp.ofEpochSecond(1, 500);
+    assertThat(((TimeFieldValue) TIME.convert(fraction, format)).getValue(), is(LocalTime.ofNanoOfDay(1_000_000_500L)));
+    // spotless:on
+    assertThat(format.getCacheHits(), is(6L));
+  }
+
+  @Test
+  public void testConvertCachedInZoneWithDaylightSaving() {
+    KintoneColumnOption option =
+        new KintoneColumnOptionBuilder().setTimezone("America/New_York").build();
+    KintoneColumnFormat format = KintoneColumnFormat.of(option, 16);
+    KintoneColumnFormat uncached = KintoneColumnFormat.of(option);
+    // Around the start of daylight saving time on 2024-03-10, the offset changing from -5 to -4
+    long[] values = {1710039600L, 1710046800L, 1710053999L, 1710054000L, 1710057600L, 1710097200L};
+    // spotless:off
+    for (long value : values) {
+      assertThat(((DateFieldValue) DATE.convert(value, format)).getValue(), is(((DateFieldValue) DATE.convert(value, uncached)).getValue()));
+      assertThat(((TimeFieldValue) TIME.convert(value, format)).getValue(), is(((TimeFieldValue) TIME.convert(value, uncached)).getValue()));
+    }
+    // spotless:on
+    // Dates are keyed by the local day, so the values of 2024-03-10 share a single entry
+    assertThat(format.getCacheMisses() - values.length, is(2L));
+  }
 }
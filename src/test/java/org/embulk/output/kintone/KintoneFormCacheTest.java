@@ -0,0 +1,53 @@
+package org.embulk.output.kintone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.kintone.client.model.record.FieldType;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KintoneFormCacheTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRevision() {
+    AtomicInteger fetches = new AtomicInteger();
+    Supplier<Map<String, FieldType>> fetch =
+        () -> {
+          fetches.incrementAndGet();
+          return Collections.singletonMap("a", FieldType.NUMBER);
+        };
+    KintoneFormCache cache = new KintoneFormCache(folder.getRoot().toPath(), "a.b", 1, null);
+    assertThat(cache.get(1, fetch).get("a"), is(FieldType.NUMBER));
+    assertThat(fetches.get(), is(1));
+    // Read from the file by another job
+    cache = new KintoneFormCache(folder.getRoot().toPath(), "a.b", 1, null);
+    assertThat(cache.get(1, fetch).get("a"), is(FieldType.NUMBER));
+    assertThat(fetches.get(), is(1));
+    assertThat(cache.get(2, fetch).get("a"), is(FieldType.NUMBER));
+    assertThat(fetches.get(), is(2));
+  }
+
+  @Test
+  public void testKey() {
+    AtomicInteger fetches = new AtomicInteger();
+    Supplier<Map<String, FieldType>> fetch =
+        () -> {
+          fetches.incrementAndGet();
+          return Collections.singletonMap("a", FieldType.NUMBER);
+        };
+    new KintoneFormCache(folder.getRoot().toPath(), "a.b", 1, null).get(1, fetch);
+    new KintoneFormCache(folder.getRoot().toPath(), "a.b", 2, null).get(1, fetch);
+    new KintoneFormCache(folder.getRoot().toPath(), "a.b", 1, 3).get(1, fetch);
+    new KintoneFormCache(folder.getRoot().toPath(), "c.d", 1, null).get(1, fetch);
+    assertThat(fetches.get(), is(4));
+    new KintoneFormCache(folder.getRoot().toPath(), "a.b", 1, 3).get(1, fetch);
+    assertThat(fetches.get(), is(4));
+  }
+}
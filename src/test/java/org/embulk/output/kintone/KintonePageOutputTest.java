@@ -0,0 +1,163 @@
+package org.embulk.output.kintone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.kintone.client.RecordClient;
+import com.kintone.client.api.record.GetRecordsRequest;
+import com.kintone.client.api.record.GetRecordsResponseBody;
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import com.kintone.client.model.record.SingleLineTextFieldValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.Page;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.embulk.util.config.ConfigMapper;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class KintonePageOutputTest extends TestKintoneOutputPlugin {
+  private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder().addDefaultModules().build();
+  private static final ConfigMapper CONFIG_MAPPER = CONFIG_MAPPER_FACTORY.createConfigMapper();
+
+  @Test
+  public void testChunksAcrossPages() throws Exception {
+    ConfigSource config = loadConfigYaml("client/config.yml").merge(config("mode: insert"));
+    PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+    Schema schema = Schema.builder().add("string_single_line_text", Types.STRING).build();
+    MockClient mockClient =
+        new MockClient(
+            config.get(String.class, "domain"),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            "");
+    mockClient.run(
+        () -> {
+          KintonePageOutput output = new KintonePageOutput(task, schema);
+          try {
+            // 5 pages of 50 records are sent as 2 full chunks and the rest
+            for (int page = 0; page < 5; page++) {
+              output.add(page(schema, page, 50));
+            }
+            output.finish();
+          } finally {
+            output.close();
+          }
+        });
+    RecordClient mockRecordClient = mockClient.getMockRecordClient();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Record>> captor = ArgumentCaptor.forClass(List.class);
+    verify(mockRecordClient, times(3)).addRecords(eq(0L), captor.capture());
+    List<Integer> sizes =
+        captor.getAllValues().stream().map(List::size).collect(Collectors.toList());
+    assertThat(sizes, contains(100, 100, 50));
+  }
+
+  @Test
+  public void testUpsertSnapshotAcrossWindows() throws Exception {
+    ConfigSource config =
+        loadConfigYaml("client/config.yml")
+            .merge(
+                config(
+                    "mode: upsert",
+                    "update_key: key_single_line_text",
+                    "upsert_lookup: snapshot",
+                    "max_in_flight_requests: 4"));
+    PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+    Schema schema = Schema.builder().add("key_single_line_text", Types.STRING).build();
+    MockClient mockClient =
+        new MockClient(
+            config.get(String.class, "domain"),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            "");
+    RecordClient mockRecordClient = mockClient.getMockRecordClient();
+    // The app has one record, which is the whole snapshot
+    Record existing =
+        new Record(1L, 1L)
+            .putField("key_single_line_text", new SingleLineTextFieldValue("existing"));
+    GetRecordsResponseBody response = mock(GetRecordsResponseBody.class);
+    when(response.getTotalCount()).thenReturn(1L);
+    when(response.getRecords()).thenReturn(Collections.singletonList(existing));
+    when(mockRecordClient.getRecords(any(GetRecordsRequest.class))).thenReturn(response);
+    List<String> keys = new ArrayList<>();
+    // The first window inserts all but the existing key
+    keys.add("existing");
+    for (int index = 1; index < 10000; index++) {
+      keys.add("key" + index);
+    }
+    // The second window updates a key inserted by the first, and inserts a new one
+    keys.add("key1");
+    keys.add("new");
+    mockClient.run(
+        () -> {
+          KintonePageOutput output = new KintonePageOutput(task, schema);
+          try {
+            for (int from = 0; from < keys.size(); from += 200) {
+              output.add(page(schema, keys.subList(from, Math.min(from + 200, keys.size()))));
+            }
+            output.finish();
+          } finally {
+            output.close();
+          }
+        });
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Record>> added = ArgumentCaptor.forClass(List.class);
+    verify(mockRecordClient, atLeastOnce()).addRecords(eq(0L), added.capture());
+    List<String> addedKeys =
+        added.getAllValues().stream()
+            .flatMap(List::stream)
+            .map(record -> record.getSingleLineTextFieldValue("key_single_line_text"))
+            .collect(Collectors.toList());
+    assertThat(addedKeys.size(), is(10000));
+    assertThat(Collections.frequency(addedKeys, "key1"), is(1));
+    assertThat(addedKeys.contains("new"), is(true));
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<RecordForUpdate>> updated = ArgumentCaptor.forClass(List.class);
+    verify(mockRecordClient, atLeastOnce()).updateRecords(eq(0L), updated.capture());
+    List<String> updatedKeys =
+        updated.getAllValues().stream()
+            .flatMap(List::stream)
+            .map(record -> (String) record.getUpdateKey().getValue())
+            .collect(Collectors.toList());
+    assertThat(updatedKeys, containsInAnyOrder("existing", "key1"));
+  }
+
+  private static Page page(Schema schema, List<String> keys) {
+    return OutputPageBuilder.build(
+        schema,
+        builder -> {
+          keys.forEach(key -> builder.setString("key_single_line_text", key).addRecord());
+          return builder.build();
+        });
+  }
+
+  private static Page page(Schema schema, int page, int size) {
+    return OutputPageBuilder.build(
+        schema,
+        builder -> {
+          for (int index = 0; index < size; index++) {
+            builder
+                .setString("string_single_line_text", String.format("%d-%d", page, index))
+                .addRecord();
+          }
+          return builder.build();
+        });
+  }
+}
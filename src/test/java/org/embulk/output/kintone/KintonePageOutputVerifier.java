@@ -19,6 +19,7 @@ import com.kintone.client.model.record.SingleLineTextFieldValue;
 import com.kintone.client.model.record.SubtableFieldValue;
 import com.kintone.client.model.record.UpdateKey;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -45,6 +46,7 @@ public class KintonePageOutputVerifier implements TransactionalPageOutput {
   private final List<String> addValues;
   private final List<Record> addRecords;
   private final List<RecordForUpdate> updateRecords;
+  private final List<Page> pages = new ArrayList<>();
 
   public KintonePageOutputVerifier(
       String domain,
@@ -75,12 +77,18 @@ public class KintonePageOutputVerifier implements TransactionalPageOutput {
 
   @Override
   public void add(Page page) {
-    runWithMock(() -> transactionalPageOutput.add(page));
+    // NOTE: records are accumulated across pages, so they are verified when the task finishes.
+    pages.add(page);
   }
 
   @Override
   public void finish() {
-    transactionalPageOutput.finish();
+    runWithMock(
+        () -> {
+          pages.forEach(transactionalPageOutput::add);
+          pages.clear();
+          transactionalPageOutput.finish();
+        });
   }
 
   @Override
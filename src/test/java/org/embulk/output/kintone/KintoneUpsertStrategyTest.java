@@ -0,0 +1,38 @@
+package org.embulk.output.kintone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.embulk.util.config.ConfigMapper;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.Test;
+
+public class KintoneUpsertStrategyTest extends TestKintoneOutputPlugin {
+  private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY =
+      ConfigMapperFactory.builder().addDefaultModules().build();
+  private static final ConfigMapper CONFIG_MAPPER = CONFIG_MAPPER_FACTORY.createConfigMapper();
+
+  @Test
+  public void testIsNative() {
+    // spotless:off
+    assertThat(isNative("upsert_strategy: cursor", "update_key: string_single_line_text"), is(false));
+    assertThat(isNative("upsert_strategy: native", "update_key: string_single_line_text"), is(true));
+    assertThat(isNative("upsert_strategy: native", "update_key: long_number"), is(true));
+    assertThat(isNative("upsert_strategy: native", "update_key: $id"), is(false));
+    assertThat(isNative("upsert_strategy: native", "update_key: null"), is(false));
+    assertThat(isNative("upsert_strategy: native", "update_key: string_single_line_text", "skip_if_non_existing_id_or_update_key: never"), is(true));
+    assertThat(isNative("upsert_strategy: native", "update_key: string_single_line_text", "skip_if_non_existing_id_or_update_key: always"), is(false));
+    // spotless:on
+  }
+
+  private boolean isNative(String... strings) {
+    PluginTask task = task(strings);
+    return task.getUpsertStrategy().isNative(task);
+  }
+
+  private PluginTask task(String... strings) {
+    return CONFIG_MAPPER.map(
+        loadConfigYaml("client/config.yml").merge(config("mode: upsert")).merge(config(strings)),
+        PluginTask.class);
+  }
+}
@@ -14,6 +14,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
 import com.kintone.client.model.record.FieldType;
@@ -22,7 +25,9 @@ import java.util.AbstractMap;
 import java.util.Collections;
 import java.util.Map;
 import java.util.function.Function;
+import org.apache.commons.lang3.tuple.Pair;
 import org.embulk.output.kintone.deserializer.DeserializerTest;
+import org.embulk.output.kintone.util.Lazy;
 import org.embulk.spi.Page;
 import org.embulk.spi.Schema;
 import org.embulk.spi.json.JsonParser;
@@ -32,7 +37,7 @@ import org.junit.Test;
 import org.msgpack.value.Value;
 import org.msgpack.value.ValueFactory;
 
-public class KintoneColumnVisitorTest {
+public class KintoneWritePlanTest {
   private static final JsonParser PARSER = new JsonParser();
   private static final String[] ROWS = {
     DeserializerTest.TABLE_ROW.apply(0L),
@@ -45,7 +50,7 @@ public class KintoneColumnVisitorTest {
 
   @Test
   public void test() {
-    KintoneColumnVisitorVerifier verifier = verifier(null, "STRING|SINGLE_LINE_TEXT");
+    KintoneWritePlanVerifier verifier = verifier(null, "STRING|SINGLE_LINE_TEXT");
     verifier.verify(
         (record, idOrUpdateKey) -> {
           assertThat(record.getSingleLineTextFieldValue("BOOLEAN|SINGLE_LINE_TEXT"), is("false"));
@@ -332,7 +337,7 @@ public class KintoneColumnVisitorTest {
 
   @Test
   public void testPreferNulls() {
-    KintoneColumnVisitorVerifier verifier = verifier(null, "LONG", true, false);
+    KintoneWritePlanVerifier verifier = verifier(null, "LONG", true, false);
     verifier.verify(
         (record, idOrUpdateKey) -> {
           assertThat(
@@ -457,7 +462,7 @@ public class KintoneColumnVisitorTest {
 
   @Test
   public void testIgnoreNulls() {
-    KintoneColumnVisitorVerifier verifier = verifier("JSON", "JSON", false, true);
+    KintoneWritePlanVerifier verifier = verifier("JSON", "JSON", false, true);
     verifier.verify(
         (record, idOrUpdateKey) -> {
           assertThat(record.getFieldValue("BOOLEAN|SINGLE_LINE_TEXT"), nullValue());
@@ -521,7 +526,7 @@ public class KintoneColumnVisitorTest {
 
   @Test
   public void testReduceKey() {
-    KintoneColumnVisitorVerifier verifier = verifier("JSON|SUBTABLE", null);
+    KintoneWritePlanVerifier verifier = verifier("JSON|SUBTABLE", null);
     verifier.verify(
         (record, idOrUpdateKey) -> {
           assertThat(record.getSingleLineTextFieldValue("BOOLEAN|SINGLE_LINE_TEXT"), is("false"));
@@ -595,7 +600,7 @@ public class KintoneColumnVisitorTest {
   @Test
   public void testUpdateKey() {
     assertThrows(UnsupportedOperationException.class, () -> verifier(null, "TIMESTAMP").verify());
-    KintoneColumnVisitorVerifier verifier = verifier(null, "TIMESTAMP|NUMBER");
+    KintoneWritePlanVerifier verifier = verifier(null, "TIMESTAMP|NUMBER");
     verifier.verify(
         (record, idOrUpdateKey) -> {
           assertThat(idOrUpdateKey.getField(), is("TIMESTAMP|NUMBER"));
@@ -618,30 +623,70 @@ public class KintoneColumnVisitorTest {
         });
   }
 
-  private static KintoneColumnVisitorVerifier verifier(String reduceKeyName, String updateKeyName) {
+  @Test
+  public void testWrongTypeFields() {
+    KintoneClient client = mock(KintoneClient.class);
+    when(client.getFieldType(anyString())).thenReturn(null);
+    when(client.getFieldType("long_number")).thenReturn(FieldType.NUMBER);
+    when(client.getFieldType("string_text")).thenReturn(FieldType.MULTI_LINE_TEXT);
+    when(client.getFieldType("string_single_line_text")).thenReturn(FieldType.SINGLE_LINE_TEXT);
+    Schema schema =
+        Schema.builder()
+            .add("$id", Types.LONG)
+            .add("long", Types.LONG)
+            .add("string", Types.STRING)
+            .add("string_date", Types.STRING)
+            .add("string_single_line_text", Types.STRING)
+            .add("reduced.string", Types.STRING)
+            .build();
+    Map<String, KintoneColumnOption> options =
+        ImmutableMap.of(
+            "long", option("NUMBER", "long_number"),
+            "string", option("SINGLE_LINE_TEXT", "string_text"),
+            "string_date", option("DATE", "string_date"));
+    KintoneWritePlan plan =
+        new KintoneWritePlan(lazy(client), schema, options, false, false, "reduced", "$id");
+    // Checked without writing records, so the columns of null values are reported as well
+    Map<String, Pair<FieldType, FieldType>> expected =
+        ImmutableMap.of(
+            "string_date", Pair.of(FieldType.DATE, null),
+            "string_text", Pair.of(FieldType.SINGLE_LINE_TEXT, FieldType.MULTI_LINE_TEXT));
+    assertThat(plan.getWrongTypeFields(client), is(expected));
+  }
+
+  @Test
+  public void testNoWrongTypeFields() {
+    KintoneClient client = mock(KintoneClient.class);
+    when(client.getFieldType("long_number")).thenReturn(FieldType.NUMBER);
+    Schema schema = Schema.builder().add("long_number", Types.LONG).build();
+    KintoneWritePlan plan =
+        new KintoneWritePlan(lazy(client), schema, Collections.emptyMap(), false, true, null, null);
+    // The types of the fields without options are the types of the form
+    assertThat(plan.getWrongTypeFields(client), is(Collections.emptyMap()));
+  }
+
+  private static KintoneWritePlanVerifier verifier(String reduceKeyName, String updateKeyName) {
     Schema schema = build(Schema.builder());
-    return new KintoneColumnVisitorVerifier(
+    return new KintoneWritePlanVerifier(
         schema,
-        Collections.emptySet(),
         build(ImmutableMap.builder()),
         reduceKeyName,
         updateKeyName,
-        OutputPageBuilder.build(schema, KintoneColumnVisitorTest::build));
+        OutputPageBuilder.build(schema, KintoneWritePlanTest::build));
   }
 
-  private static KintoneColumnVisitorVerifier verifier(
+  private static KintoneWritePlanVerifier verifier(
       String reduceKeyName, String updateKeyName, boolean preferNulls, boolean ignoreNulls) {
     Schema schema = build(Schema.builder());
-    return new KintoneColumnVisitorVerifier(
+    return new KintoneWritePlanVerifier(
         null,
         schema,
-        Collections.emptySet(),
         build(ImmutableMap.builder()),
         preferNulls,
         ignoreNulls,
         reduceKeyName,
         updateKeyName,
-        OutputPageBuilder.build(schema, KintoneColumnVisitorTest::build));
+        OutputPageBuilder.build(schema, KintoneWritePlanTest::build));
   }
 
   private static Schema build(Schema.Builder builder) {
@@ -1000,4 +1045,17 @@ public class KintoneColumnVisitorTest {
   private static Value value(String json) {
     return PARSER.parse(json);
   }
+
+  private static KintoneColumnOption option(String type, String fieldCode) {
+    return new KintoneColumnOptionBuilder().setType(type).setFieldCode(fieldCode).build();
+  }
+
+  private static Lazy<KintoneClient> lazy(KintoneClient client) {
+    return new Lazy<KintoneClient>() {
+      @Override
+      protected KintoneClient initialValue() {
+        return client;
+      }
+    };
+  }
 }
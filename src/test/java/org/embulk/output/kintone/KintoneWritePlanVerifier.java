@@ -3,7 +3,6 @@ package org.embulk.output.kintone;
 import com.kintone.client.model.record.FieldType;
 import com.kintone.client.model.record.Record;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.BiConsumer;
 import javax.validation.UnexpectedTypeException;
 import org.embulk.output.kintone.record.IdOrUpdateKey;
@@ -13,26 +12,24 @@ import org.embulk.spi.Page;
 import org.embulk.spi.PageReader;
 import org.embulk.spi.Schema;
 
-public class KintoneColumnVisitorVerifier {
+public class KintoneWritePlanVerifier {
   private final Schema schema;
   private final Map<String, KintoneColumnOption> options;
   private final PageReader reader;
-  private final KintoneColumnVisitor visitor;
+  private final KintoneWritePlan plan;
 
-  public KintoneColumnVisitorVerifier(
+  public KintoneWritePlanVerifier(
       Schema schema,
-      Set<Column> derived,
       Map<String, KintoneColumnOption> options,
       String reduceKeyName,
       String updateKeyName,
       Page page) {
-    this(null, schema, derived, options, false, false, reduceKeyName, updateKeyName, page);
+    this(null, schema, options, false, false, reduceKeyName, updateKeyName, page);
   }
 
-  public KintoneColumnVisitorVerifier(
+  public KintoneWritePlanVerifier(
       Lazy<KintoneClient> client,
       Schema schema,
-      Set<Column> derived,
       Map<String, KintoneColumnOption> options,
       boolean preferNulls,
       boolean ignoreNulls,
@@ -43,16 +40,9 @@ public class KintoneColumnVisitorVerifier {
     this.options = options;
     reader = new PageReader(schema);
     reader.setPage(page);
-    visitor =
-        new KintoneColumnVisitor(
-            client,
-            reader,
-            derived,
-            options,
-            preferNulls,
-            ignoreNulls,
-            reduceKeyName,
-            updateKeyName);
+    plan =
+        new KintoneWritePlan(
+            client, schema, options, preferNulls, ignoreNulls, reduceKeyName, updateKeyName);
   }
 
   public void verify() {
@@ -68,10 +58,8 @@ public class KintoneColumnVisitorVerifier {
       throw new IllegalStateException();
     }
     Record record = new Record();
-    visitor.setRecord(record);
     IdOrUpdateKey idOrUpdateKey = new IdOrUpdateKey();
-    visitor.setIdOrUpdateKey(idOrUpdateKey);
-    schema.visitColumns(visitor);
+    plan.write(reader, record, idOrUpdateKey);
     schema.getColumns().forEach(column -> verify(record, column, nullable));
     consumer.accept(record, idOrUpdateKey);
   }
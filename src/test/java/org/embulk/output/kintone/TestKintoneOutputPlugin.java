@@ -2,6 +2,7 @@ package org.embulk.output.kintone;
 
 import com.google.common.io.Resources;
 import com.kintone.client.Json;
+import com.kintone.client.model.record.FieldType;
 import com.kintone.client.model.record.Record;
 import com.kintone.client.model.record.RecordForUpdate;
 import com.kintone.client.model.record.UpdateKey;
@@ -13,6 +14,7 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -103,6 +105,24 @@ public class TestKintoneOutputPlugin extends KintoneOutputPlugin {
     return embulk.configLoader().fromYamlString(string);
   }
 
+  @Override
+  protected Map<String, FieldType> getFieldTypes(PluginTask task, Schema schema) {
+    if (task.getReduceKeyName().isPresent()) {
+      // The transaction is already run with the mock
+      return super.getFieldTypes(task, schema);
+    }
+    // The form is fetched from the mock, the same as by the tasks
+    MockClient mockClient =
+        new MockClient(task.getDomain(), Collections.emptyList(), Collections.emptyList(), "");
+    AtomicReference<Map<String, FieldType>> fieldTypes = new AtomicReference<>();
+    try {
+      mockClient.run(() -> fieldTypes.set(super.getFieldTypes(task, schema)));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return fieldTypes.get();
+  }
+
   private ConfigDiff transactionWithVerifier(
       ConfigSource config, Schema schema, int taskCount, Control control) {
     try (KintonePageOutputVerifier verifier = verifier(config)) {
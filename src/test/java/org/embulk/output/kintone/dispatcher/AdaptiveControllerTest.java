@@ -0,0 +1,71 @@
+package org.embulk.output.kintone.dispatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class AdaptiveControllerTest {
+  @Test
+  public void testIncrease() {
+    AdaptiveController controller = new AdaptiveController(4);
+    assertThat(controller.getConcurrency(), is(1));
+    for (int i = 0; i < 100; i++) {
+      assertThat(controller.call(() -> "result", e -> true), is("result"));
+    }
+    assertThat(controller.getConcurrency(), is(4));
+    assertThat(controller.getChunkSize(100, 10), is(100));
+  }
+
+  @Test
+  public void testDecrease() {
+    AdaptiveController controller = new AdaptiveController(4);
+    for (int i = 0; i < 100; i++) {
+      controller.call(() -> null, e -> true);
+    }
+    fail(controller);
+    assertThat(controller.getConcurrency(), is(2));
+    fail(controller);
+    assertThat(controller.getConcurrency(), is(1));
+    // Once the concurrency is at its minimum, the chunk size is cut instead
+    fail(controller);
+    assertThat(controller.getConcurrency(), is(1));
+    assertThat(controller.getChunkSize(100, 10), is(50));
+  }
+
+  @Test
+  public void testNotCongestion() {
+    AdaptiveController controller = new AdaptiveController(4);
+    for (int i = 0; i < 100; i++) {
+      controller.call(() -> null, e -> true);
+    }
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            controller.call(
+                () -> {
+                  throw new IllegalStateException();
+                },
+                e -> false));
+    assertThat(controller.getConcurrency(), is(4));
+  }
+
+  @Test
+  public void testWideRecords() {
+    AdaptiveController controller = new AdaptiveController(1);
+    assertThat(controller.getChunkSize(100, 500), is(20));
+    assertThat(controller.getChunkSize(100, 20000), is(1));
+  }
+
+  private static void fail(AdaptiveController controller) {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            controller.call(
+                () -> {
+                  throw new IllegalStateException();
+                },
+                e -> true));
+  }
+}
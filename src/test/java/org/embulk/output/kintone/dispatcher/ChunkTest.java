@@ -0,0 +1,51 @@
+package org.embulk.output.kintone.dispatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import com.kintone.client.model.record.UpdateKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.output.kintone.KintoneTransport;
+import org.junit.Test;
+
+public class ChunkTest {
+  @Test
+  public void testInsert() {
+    List<Record> records = Arrays.asList(new Record(), new Record());
+    Chunk chunk = Chunk.insert(records);
+    assertThat(chunk.getType(), is(Chunk.Type.INSERT));
+    assertThat(chunk.size(), is(2));
+    KintoneTransport client = mock(KintoneTransport.class);
+    chunk.execute(client, 1L);
+    verify(client).addRecords(eq(1L), eq(records));
+  }
+
+  @Test
+  public void testUpdate() {
+    List<RecordForUpdate> records =
+        Collections.singletonList(new RecordForUpdate(1L, new Record()));
+    Chunk chunk = Chunk.update(records);
+    assertThat(chunk.getType(), is(Chunk.Type.UPDATE));
+    KintoneTransport client = mock(KintoneTransport.class);
+    chunk.execute(client, 1L);
+    verify(client).updateRecords(eq(1L), eq(records));
+  }
+
+  @Test
+  public void testUpsert() {
+    List<RecordForUpdate> records =
+        Collections.singletonList(new RecordForUpdate(new UpdateKey("key", "value"), new Record()));
+    Chunk chunk = Chunk.upsert(records);
+    assertThat(chunk.getType(), is(Chunk.Type.UPSERT));
+    KintoneTransport client = mock(KintoneTransport.class);
+    chunk.execute(client, 1L);
+    verify(client).upsertRecords(eq(1L), eq(records));
+  }
+}
@@ -0,0 +1,170 @@
+package org.embulk.output.kintone.dispatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.kintone.client.model.record.Record;
+import com.kintone.client.model.record.RecordForUpdate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.embulk.output.kintone.KintoneClient;
+import org.embulk.output.kintone.PluginTask;
+import org.junit.Test;
+
+public class DispatcherTest {
+  @Test
+  public void testSharedClient() {
+    PluginTask task = task("dispatcher.shared", 60000L);
+    KintoneClient client = mock(KintoneClient.class);
+    Dispatcher first = Dispatcher.acquire(task, () -> client);
+    Dispatcher second = Dispatcher.acquire(task, () -> mock(KintoneClient.class));
+    assertThat(second, is(sameInstance(first)));
+    assertThat(second.client(), is(sameInstance(client)));
+    first.close();
+    verify(client, never()).close();
+    second.close();
+    verify(client).close();
+  }
+
+  @Test
+  public void testPermitsDroppedWithDispatcher() throws Exception {
+    Dispatcher.acquire(task("dispatcher.permits", 60000L), () -> mock(KintoneClient.class)).close();
+    // A later job on the same domain is limited by its own configuration
+    PluginTask task = task("dispatcher.permits", 60000L);
+    when(task.getMaxConcurrentRequests()).thenReturn(2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Dispatcher dispatcher = Dispatcher.acquire(task, () -> mock(KintoneClient.class))) {
+      // Waits forever for a second permit, if there is only one
+      boolean nested =
+          dispatcher.call(
+              () -> {
+                try {
+                  return executor
+                      .submit(() -> dispatcher.call(() -> true, wait -> {}))
+                      .get(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              },
+              wait -> {});
+      assertThat(nested, is(true));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    PluginTask task = task("dispatcher.merge", 60000L);
+    try (Dispatcher dispatcher = Dispatcher.acquire(task, () -> mock(KintoneClient.class))) {
+      List<Chunk> sent = Collections.synchronizedList(new ArrayList<>());
+      Dispatcher.Sender sender = (chunk, onError) -> sent.add(chunk);
+      Chunk first = Chunk.insert(records(1));
+      Chunk second = Chunk.insert(records(2));
+      CompletableFuture<Dispatcher.Merged> firstFuture = dispatcher.merge(first, sender);
+      assertThat(firstFuture.isDone(), is(false));
+      // The merged chunk is full, so it is sent without waiting for the linger time
+      CompletableFuture<Dispatcher.Merged> secondFuture = dispatcher.merge(second, sender);
+      Dispatcher.Merged firstMerged = firstFuture.get(10, TimeUnit.SECONDS);
+      Dispatcher.Merged secondMerged = secondFuture.get(10, TimeUnit.SECONDS);
+      assertThat(sent.size(), is(1));
+      assertThat(sent.get(0).getType(), is(Chunk.Type.INSERT));
+      assertThat(sent.get(0).size(), is(3));
+      assertThat(firstMerged.getOffset(), is(0));
+      assertThat(secondMerged.getOffset(), is(1));
+      assertThat(secondMerged.getChunk(), is(sameInstance(sent.get(0))));
+    }
+  }
+
+  @Test
+  public void testLinger() throws Exception {
+    PluginTask task = task("dispatcher.linger", 10L);
+    try (Dispatcher dispatcher = Dispatcher.acquire(task, () -> mock(KintoneClient.class))) {
+      RuntimeException failure = new RuntimeException("failure");
+      Dispatcher.Sender sender =
+          (chunk, onError) -> {
+            throw failure;
+          };
+      Dispatcher.Merged merged =
+          dispatcher.merge(Chunk.insert(records(1)), sender).get(10, TimeUnit.SECONDS);
+      assertThat(merged.getChunk().size(), is(1));
+      assertThat(merged.getFailure(), is(sameInstance(failure)));
+    }
+  }
+
+  @Test
+  public void testSendOffScheduler() throws Exception {
+    PluginTask task = task("dispatcher.send", 10L);
+    try (Dispatcher dispatcher = Dispatcher.acquire(task, () -> mock(KintoneClient.class))) {
+      CountDownLatch latch = new CountDownLatch(1);
+      Dispatcher.Sender sender =
+          (chunk, onError) -> {
+            if (chunk.getType() == Chunk.Type.INSERT) {
+              try {
+                latch.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          };
+      CompletableFuture<Dispatcher.Merged> insert =
+          dispatcher.merge(Chunk.insert(records(3)), sender);
+      // The linger time of the other batch passes while the full chunk is still being sent
+      Dispatcher.Merged update =
+          dispatcher.merge(Chunk.update(updates(1)), sender).get(10, TimeUnit.SECONDS);
+      assertThat(update.getChunk().size(), is(1));
+      assertThat(insert.isDone(), is(false));
+      latch.countDown();
+      assertThat(insert.get(10, TimeUnit.SECONDS).getChunk().size(), is(3));
+    }
+  }
+
+  @Test
+  public void testCall() {
+    PluginTask task = task("dispatcher.call", 60000L);
+    try (Dispatcher dispatcher = Dispatcher.acquire(task, () -> mock(KintoneClient.class))) {
+      List<Long> waits = new ArrayList<>();
+      assertThat(dispatcher.call(() -> "result", waits::add), is("result"));
+      assertThat(waits.size(), is(1));
+    }
+  }
+
+  private static PluginTask task(String domain, long lingerMillis) {
+    PluginTask task = mock(PluginTask.class);
+    when(task.getDomain()).thenReturn(domain);
+    when(task.getGuestSpaceId()).thenReturn(Optional.empty());
+    when(task.getAppId()).thenReturn(1);
+    when(task.getChunkSize()).thenReturn(3);
+    when(task.getMaxConcurrentRequests()).thenReturn(1);
+    when(task.getDispatcherLingerMillis()).thenReturn(lingerMillis);
+    return task;
+  }
+
+  private static List<RecordForUpdate> updates(int size) {
+    List<RecordForUpdate> records = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      records.add(new RecordForUpdate((long) i + 1, new Record()));
+    }
+    return records;
+  }
+
+  private static List<Record> records(int size) {
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      records.add(new Record());
+    }
+    return records;
+  }
+}
@@ -0,0 +1,83 @@
+package org.embulk.output.kintone.dispatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class RequestWindowTest {
+  @Test
+  public void testInline() {
+    List<Integer> completed = new ArrayList<>();
+    try (RequestWindow window = new RequestWindow(1)) {
+      window.submit(() -> () -> completed.add(0));
+      assertThat(completed, is(Arrays.asList(0)));
+      assertThat(window.inFlight(), is(0));
+    }
+  }
+
+  @Test
+  public void testOrderedCompletion() throws Exception {
+    List<Integer> completed = new ArrayList<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    try (RequestWindow window = new RequestWindow(3)) {
+      // The first request finishes last, but is completed first
+      window.submit(
+          () -> {
+            latch.await(10, TimeUnit.SECONDS);
+            return () -> completed.add(0);
+          });
+      window.submit(() -> () -> completed.add(1));
+      window.submit(() -> () -> completed.add(2));
+      assertThat(window.inFlight(), is(3));
+      assertThat(completed.isEmpty(), is(true));
+      latch.countDown();
+      window.drain();
+      assertThat(completed, is(Arrays.asList(0, 1, 2)));
+      assertThat(window.inFlight(), is(0));
+    }
+  }
+
+  @Test
+  public void testBackpressure() {
+    List<Integer> completed = new ArrayList<>();
+    try (RequestWindow window = new RequestWindow(2)) {
+      window.submit(() -> () -> completed.add(0));
+      window.submit(() -> () -> completed.add(1));
+      // The window is full, so the oldest request is completed before submitting
+      window.submit(() -> () -> completed.add(2));
+      assertThat(completed, is(Arrays.asList(0)));
+      assertThat(window.inFlight(), is(2));
+      window.drain();
+      assertThat(completed, is(Arrays.asList(0, 1, 2)));
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    try (RequestWindow window = new RequestWindow(2)) {
+      window.submit(
+          () -> {
+            throw new IllegalStateException("failure");
+          });
+      assertThat(
+          assertThrows(IllegalStateException.class, window::drain).getMessage(), is("failure"));
+    }
+    try (RequestWindow window = new RequestWindow(2)) {
+      window.submit(
+          () ->
+              () -> {
+                throw new IllegalStateException("completion failure");
+              });
+      assertThat(
+          assertThrows(IllegalStateException.class, window::drain).getMessage(),
+          is("completion failure"));
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package org.embulk.output.kintone.encoder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kintone.client.model.record.FieldType;
+import com.kintone.client.model.record.Record;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.embulk.output.kintone.KintoneClient;
+import org.embulk.output.kintone.KintoneWritePlan;
+import org.embulk.output.kintone.OutputPageBuilder;
+import org.embulk.output.kintone.util.Lazy;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class EncodedRecordsTest {
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .add("string_single_line_text", Types.STRING)
+          .add("long_number", Types.LONG)
+          .add("double_number", Types.DOUBLE)
+          .add("string_check_box", Types.STRING)
+          .add("timestamp_datetime", Types.TIMESTAMP)
+          .build();
+
+  @Test
+  public void testSameAsRecords() throws IOException {
+    Page page =
+        OutputPageBuilder.build(
+            SCHEMA,
+            builder ->
+                builder
+                    .setString("string_single_line_text", "a\"b")
+                    .setLong("long_number", -123)
+                    .setDouble("double_number", 1.5)
+                    .setString("string_check_box", "a,b")
+                    .setTimestamp("timestamp_datetime", Timestamp.ofEpochSecond(946684799, 0))
+                    .addRecord()
+                    .setNull("string_single_line_text")
+                    .setNull("long_number")
+                    .setNull("double_number")
+                    .setNull("string_check_box")
+                    .setNull("timestamp_datetime")
+                    .addRecord()
+                    .setString("string_single_line_text", "")
+                    .setLong("long_number", Long.MIN_VALUE)
+                    .setDouble("double_number", 0.1)
+                    .setString("string_check_box", "c")
+                    // Differs from the first only in the fraction of the second
+                    .setTimestamp(
+                        "timestamp_datetime", Timestamp.ofEpochSecond(946684799, 123000000))
+                    .addRecord()
+                    .build());
+    assertSameAsRecords(page, false, false);
+    assertSameAsRecords(page, true, false);
+    assertSameAsRecords(page, false, true);
+  }
+
+  @Test
+  public void testSeparators() {
+    Schema schema = Schema.builder().add("string_single_line_text", Types.STRING).build();
+    KintoneWritePlan plan = plan(schema, false, false);
+    Page page =
+        OutputPageBuilder.build(
+            schema,
+            builder ->
+                builder
+                    .setString("string_single_line_text", "a")
+                    .addRecord()
+                    .setString("string_single_line_text", "b,c")
+                    .addRecord()
+                    .build());
+    EncodedRecords records = new EncodedRecords(1);
+    records.finish();
+    assertThat(body(records), is("{\"app\":1,\"records\":[]}"));
+    assertThat(records.decode().size(), is(0));
+    // The buffer is reused for the following bodies
+    for (int i = 0; i < 2; i++) {
+      records.reset();
+      add(records, plan, schema, page);
+      records.finish();
+      assertThat(records.size(), is(2));
+      // spotless:off
+      assertThat(body(records), is("{\"app\":1,\"records\":[{\"string_single_line_text\":{\"value\":\"a\"}},{\"string_single_line_text\":{\"value\":\"b,c\"}}]}"));
+      // spotless:on
+      List<Map<String, Object>> decoded = records.decode();
+      assertThat(decoded.size(), is(2));
+      assertThat(decoded.get(0), is(Collections.singletonMap("string_single_line_text", "a")));
+      assertThat(decoded.get(1), is(Collections.singletonMap("string_single_line_text", "b,c")));
+    }
+  }
+
+  @Test
+  public void testDecode() {
+    Page page =
+        OutputPageBuilder.build(
+            SCHEMA,
+            builder ->
+                builder
+                    .setString("string_single_line_text", "a")
+                    .setLong("long_number", 1)
+                    .setNull("double_number")
+                    .setString("string_check_box", "a,b")
+                    .setNull("timestamp_datetime")
+                    .addRecord()
+                    .build());
+    EncodedRecords records = new EncodedRecords(1);
+    add(records, plan(SCHEMA, true, false), SCHEMA, page);
+    records.finish();
+    // Decoded the same as the fields of the records logged for errors
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("string_single_line_text", "a");
+    expected.put("long_number", "1");
+    expected.put("double_number", null);
+    expected.put("string_check_box", Arrays.asList("a", "b"));
+    expected.put("timestamp_datetime", null);
+    assertThat(records.decode(), is(Collections.singletonList(expected)));
+  }
+
+  private static void assertSameAsRecords(Page page, boolean preferNulls, boolean ignoreNulls)
+      throws IOException {
+    KintoneWritePlan plan = plan(SCHEMA, preferNulls, ignoreNulls);
+    EncodedRecords records = new EncodedRecords(1);
+    add(records, plan, SCHEMA, page);
+    records.finish();
+    String reason = String.format("prefer_nulls: %s, ignore_nulls: %s", preferNulls, ignoreNulls);
+    assertThat(reason, MAPPER.readTree(body(records)), is(MAPPER.readTree(write(plan, page))));
+  }
+
+  /** Writes the records of the page as the client does, with the object model. */
+  private static String write(KintoneWritePlan plan, Page page) throws IOException {
+    StringWriter writer = new StringWriter();
+    // The reader is not closed, which would release the page read again
+    PageReader reader = new PageReader(SCHEMA);
+    try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+      generator.writeStartObject();
+      generator.writeNumberField("app", 1);
+      generator.writeArrayFieldStart("records");
+      reader.setPage(page);
+      while (reader.nextRecord()) {
+        Record record = new Record();
+        plan.write(reader, record, null);
+        generator.writeStartObject();
+        for (String fieldCode : record.getFieldCodes(true)) {
+          generator.writeObjectFieldStart(fieldCode);
+          generator.writeFieldName("value");
+          FieldValueEncoder.encode(generator, record.getFieldValue(fieldCode));
+          generator.writeEndObject();
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    return writer.toString();
+  }
+
+  private static void add(EncodedRecords records, KintoneWritePlan plan, Schema schema, Page page) {
+    PageReader reader = new PageReader(schema);
+    reader.setPage(page);
+    while (reader.nextRecord()) {
+      records.add(plan, reader);
+    }
+  }
+
+  private static String body(EncodedRecords records) {
+    return new String(records.getBytes(), 0, records.getLength(), StandardCharsets.UTF_8);
+  }
+
+  private static KintoneWritePlan plan(Schema schema, boolean preferNulls, boolean ignoreNulls) {
+    KintoneClient client = mock(KintoneClient.class);
+    when(client.getFieldType(anyString()))
+        .thenAnswer(
+            invocation -> {
+              String fieldCode = invocation.getArgument(0);
+              return FieldType.valueOf(
+                  fieldCode.substring(fieldCode.indexOf('_') + 1).toUpperCase());
+            });
+    Lazy<KintoneClient> lazy =
+        new Lazy<KintoneClient>() {
+          @Override
+          protected KintoneClient initialValue() {
+            return client;
+          }
+        };
+    return new KintoneWritePlan(
+        lazy, schema, Collections.emptyMap(), preferNulls, ignoreNulls, null, null);
+  }
+}
@@ -0,0 +1,55 @@
+package org.embulk.output.kintone.encoder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.kintone.client.model.User;
+import com.kintone.client.model.record.CheckBoxFieldValue;
+import com.kintone.client.model.record.DateFieldValue;
+import com.kintone.client.model.record.DateTimeFieldValue;
+import com.kintone.client.model.record.FieldValue;
+import com.kintone.client.model.record.FileFieldValue;
+import com.kintone.client.model.record.NumberFieldValue;
+import com.kintone.client.model.record.SingleLineTextFieldValue;
+import com.kintone.client.model.record.TimeFieldValue;
+import com.kintone.client.model.record.UserSelectFieldValue;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class FieldValueEncoderTest {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  @Test
+  public void testEncode() throws IOException {
+    assertThat(encode(new SingleLineTextFieldValue("a\"b")), is("\"a\\\"b\""));
+    assertThat(encode(new SingleLineTextFieldValue(null)), is("null"));
+    assertThat(encode(new NumberFieldValue(new BigDecimal("1E+3"))), is("\"1000\""));
+    assertThat(encode(new NumberFieldValue(null)), is("null"));
+    assertThat(encode(new CheckBoxFieldValue(Arrays.asList("a", "b"))), is("[\"a\",\"b\"]"));
+    assertThat(encode(new DateFieldValue(LocalDate.of(2020, 1, 2))), is("\"2020-01-02\""));
+    assertThat(encode(new TimeFieldValue(LocalTime.of(3, 4, 5))), is("\"03:04\""));
+    // spotless:off
+    assertThat(encode(new DateTimeFieldValue(ZonedDateTime.of(2020, 1, 2, 3, 4, 0, 0, ZoneOffset.UTC))), is("\"2020-01-02T03:04:00Z\""));
+    assertThat(encode(new UserSelectFieldValue(Arrays.asList(new User("a"), new User("b")))), is("[{\"code\":\"a\"},{\"code\":\"b\"}]"));
+    // spotless:on
+    assertThrows(UnsupportedOperationException.class, () -> encode(new FileFieldValue()));
+  }
+
+  private static String encode(FieldValue value) throws IOException {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+      FieldValueEncoder.encode(generator, value);
+    }
+    return writer.toString();
+  }
+}
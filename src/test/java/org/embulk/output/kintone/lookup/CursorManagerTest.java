@@ -0,0 +1,75 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.kintone.client.api.record.GetRecordsByCursorResponseBody;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.config.ConfigException;
+import org.embulk.output.kintone.KintoneTransport;
+import org.junit.Test;
+
+public class CursorManagerTest {
+  private static final List<String> FIELDS = Collections.singletonList("key");
+
+  @Test
+  public void testDeleteOnEarlyClose() {
+    KintoneTransport client = client(true);
+    CursorManager cursors = new CursorManager("early.cybozu.com", 1, null);
+    try (CursorManager.Cursor cursor = cursors.open(client, 1, FIELDS, "")) {
+      cursor.next();
+    }
+    verify(client).deleteCursor("id");
+    // the slot is released
+    try (CursorManager.Cursor cursor = cursors.open(client, 1, FIELDS, "")) {
+      assertThat(cursor.hasNext(), is(true));
+    }
+    assertThat(cursors.getOpenedCursors(), is(2L));
+  }
+
+  @Test
+  public void testNoDeleteWhenExhausted() {
+    KintoneTransport client = client(false);
+    CursorManager cursors = new CursorManager("exhausted.cybozu.com", 1, null);
+    try (CursorManager.Cursor cursor = cursors.open(client, 1, FIELDS, "")) {
+      while (cursor.hasNext()) {
+        cursor.next();
+      }
+    }
+    verify(client, never()).deleteCursor(anyString());
+  }
+
+  @Test
+  public void testSize() {
+    KintoneTransport client = client(false);
+    CursorManager cursors = new CursorManager("size.cybozu.com", 1, 100);
+    try (CursorManager.Cursor cursor = cursors.open(client, 1, FIELDS, "key = 1")) {
+      cursor.next();
+    }
+    verify(client).createCursor(eq(1L), eq(FIELDS), eq("key = 1"), eq(100L));
+  }
+
+  @Test(expected = ConfigException.class)
+  public void testInvalidSize() {
+    new CursorManager("invalid.cybozu.com", 1, CursorManager.MAX_SIZE + 1);
+  }
+
+  private static KintoneTransport client(boolean hasNext) {
+    KintoneTransport client = mock(KintoneTransport.class);
+    GetRecordsByCursorResponseBody body = mock(GetRecordsByCursorResponseBody.class);
+    when(body.hasNext()).thenReturn(hasNext);
+    when(body.getRecords()).thenReturn(Collections.emptyList());
+    when(client.createCursor(anyLong(), any(), any(), any())).thenReturn("id");
+    when(client.getRecordsByCursor("id")).thenReturn(body);
+    return client;
+  }
+}
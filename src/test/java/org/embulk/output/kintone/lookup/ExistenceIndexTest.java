@@ -0,0 +1,68 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class ExistenceIndexTest {
+  @Test
+  public void testId() {
+    ExistenceIndex index = ExistenceIndex.forId(2);
+    index.add(1L);
+    index.add("2");
+    index.add(null);
+    assertThat(index.size(), is(2));
+    assertThat(index.contains(1L), is(true));
+    assertThat(index.contains(2L), is(true));
+    assertThat(index.contains("1"), is(true));
+    assertThat(index.contains(3L), is(false));
+    assertThat(index.contains("foo"), is(false));
+    assertThat(index.contains(null), is(false));
+  }
+
+  @Test
+  public void testUpdateKey() {
+    ExistenceIndex index = ExistenceIndex.forUpdateKey(false, 2);
+    index.add("foo");
+    index.add("1.0");
+    assertThat(index.contains("foo"), is(true));
+    assertThat(index.contains(new BigDecimal("1.0")), is(true));
+    assertThat(index.contains("1"), is(false));
+    assertThat(index.contains("bar"), is(false));
+    assertThat(index.contains(null), is(false));
+  }
+
+  @Test
+  public void testNumericUpdateKey() {
+    ExistenceIndex index = ExistenceIndex.forUpdateKey(true, 3);
+    index.add(new BigDecimal("1.0"));
+    index.add(new BigDecimal("1.00E+3"));
+    index.add(new BigDecimal("0.00"));
+    assertThat(index.size(), is(3));
+    assertThat(index.contains(new BigDecimal("1")), is(true));
+    assertThat(index.contains("1.000"), is(true));
+    assertThat(index.contains("1000"), is(true));
+    assertThat(index.contains(BigDecimal.ZERO), is(true));
+    assertThat(index.contains("-0"), is(true));
+    assertThat(index.contains("2"), is(false));
+  }
+
+  @Test
+  public void testGetId() {
+    ExistenceIndex ids = ExistenceIndex.forId(1);
+    ids.put(1L, 1L);
+    assertThat(ids.getId(1L), is(1L));
+    assertThat(ids.getId(2L), is((Long) null));
+    ExistenceIndex keys = ExistenceIndex.forUpdateKey(true, 2);
+    keys.put(new BigDecimal("10"), 1L);
+    keys.add(new BigDecimal("20"));
+    assertThat(keys.getId("10.0"), is(1L));
+    assertThat(keys.contains("20"), is(true));
+    assertThat(keys.getId("20"), is((Long) null));
+    // Adding a key does not forget its id
+    keys.add("10");
+    assertThat(keys.getId("10"), is(1L));
+  }
+}
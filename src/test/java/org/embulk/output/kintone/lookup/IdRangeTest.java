@@ -0,0 +1,47 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import org.junit.Test;
+
+public class IdRangeTest {
+  @Test
+  public void testSplit() {
+    List<IdRange> ranges = IdRange.split(1, 10, 3);
+    assertThat(ranges.size(), is(3));
+    assertThat(ranges.get(0).getFrom(), is(1L));
+    assertThat(ranges.get(0).getTo(), is(4L));
+    assertThat(ranges.get(1).getFrom(), is(5L));
+    assertThat(ranges.get(1).getTo(), is(8L));
+    assertThat(ranges.get(2).getFrom(), is(9L));
+    assertThat(ranges.get(2).getTo(), is(10L));
+  }
+
+  @Test
+  public void testSplitSmall() {
+    List<IdRange> ranges = IdRange.split(5, 6, 4);
+    assertThat(ranges.size(), is(2));
+    assertThat(ranges.get(1).getFrom(), is(6L));
+    assertThat(ranges.get(1).getTo(), is(6L));
+  }
+
+  @Test
+  public void testSeek() {
+    IdRange range = new IdRange(100, 200);
+    assertThat(range.seek(99, 500), is("$id > 99 and $id <= 200 order by $id asc limit 500"));
+    assertThat(range.seek(150, 500), is("$id > 150 and $id <= 200 order by $id asc limit 500"));
+    assertThat(range.seek(0, 500), is("$id > 99 and $id <= 200 order by $id asc limit 500"));
+  }
+
+  @Test
+  public void testSeekFilter() {
+    IdRange range = new IdRange(100, 200);
+    // spotless:off
+    assertThat(range.seek("key in (\"a\")", 150, 500), is("(key in (\"a\")) and $id > 150 and $id <= 200 order by $id asc limit 500"));
+    assertThat(IdRange.head("key in (\"a\")", 500), is("(key in (\"a\")) order by $id asc limit 500"));
+    assertThat(IdRange.last("key in (\"a\")"), is("(key in (\"a\")) order by $id desc limit 1"));
+    // spotless:on
+  }
+}
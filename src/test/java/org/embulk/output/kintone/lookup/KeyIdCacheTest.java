@@ -0,0 +1,70 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeyIdCacheTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEvict() {
+    KeyIdCache cache = new KeyIdCache(false, 2, null);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertThat(cache.get("a"), is(1L));
+    cache.put("c", 3);
+    // b is the least recently used
+    assertThat(cache.get("b"), is(nullValue()));
+    assertThat(cache.get("a"), is(1L));
+    assertThat(cache.get("c"), is(3L));
+  }
+
+  @Test
+  public void testNumeric() {
+    KeyIdCache cache = new KeyIdCache(true, 10, null);
+    cache.put(new BigDecimal("1.0"), 1);
+    assertThat(cache.get("1"), is(1L));
+    assertThat(cache.get(new BigDecimal("1.00")), is(1L));
+  }
+
+  @Test
+  public void testSpill() {
+    File directory = folder.getRoot();
+    try (KeyIdCache cache = new KeyIdCache(false, 10, directory.toPath())) {
+      for (int i = 0; i < 100000; i++) {
+        cache.put("key" + i, i);
+      }
+      for (int i = 0; i < 100000; i += 99) {
+        assertThat(cache.get("key" + i), is((long) i));
+      }
+      cache.put("key0", 100000);
+      assertThat(cache.get("key0"), is(100000L));
+      assertThat(cache.get("key100000"), is(nullValue()));
+    }
+    assertThat(directory.list().length, is(0));
+  }
+
+  @Test
+  public void testSpillLongKeys() {
+    // The directory is created if missing
+    File directory = new File(folder.getRoot(), "spill");
+    String suffix = String.join("", Collections.nCopies(300, "x"));
+    try (KeyIdCache cache = new KeyIdCache(false, 1, directory.toPath())) {
+      for (int i = 0; i < 100; i++) {
+        cache.put("key" + i + suffix, i);
+      }
+      for (int i = 0; i < 100; i++) {
+        assertThat(cache.get("key" + i + suffix), is((long) i));
+      }
+    }
+    assertThat(directory.list().length, is(0));
+  }
+}
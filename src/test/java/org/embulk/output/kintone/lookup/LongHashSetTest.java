@@ -0,0 +1,43 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+  @Test
+  public void testAddAndContains() {
+    LongHashSet set = new LongHashSet();
+    for (long i = 1; i <= 10000; i++) {
+      assertThat(set.add(i * 3), is(true));
+    }
+    assertThat(set.size(), is(10000));
+    for (long i = 1; i <= 10000; i++) {
+      assertThat(set.contains(i * 3), is(true));
+      assertThat(set.contains(i * 3 + 1), is(false));
+    }
+  }
+
+  @Test
+  public void testDuplicate() {
+    LongHashSet set = new LongHashSet(1);
+    assertThat(set.add(1), is(true));
+    assertThat(set.add(1), is(false));
+    assertThat(set.size(), is(1));
+  }
+
+  @Test
+  public void testZeroAndNegative() {
+    LongHashSet set = new LongHashSet();
+    assertThat(set.contains(0), is(false));
+    assertThat(set.add(0), is(true));
+    assertThat(set.add(0), is(false));
+    assertThat(set.add(-1), is(true));
+    assertThat(set.add(Long.MIN_VALUE), is(true));
+    assertThat(set.contains(0), is(true));
+    assertThat(set.contains(-1), is(true));
+    assertThat(set.contains(Long.MIN_VALUE), is(true));
+    assertThat(set.size(), is(3));
+  }
+}
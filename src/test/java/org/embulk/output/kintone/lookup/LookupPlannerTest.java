@@ -0,0 +1,71 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class LookupPlannerTest {
+  @Test
+  public void testIds() {
+    LookupPlan plan = LookupPlanner.planIds(Arrays.asList(3L, 1L, 2L, 1L));
+    assertThat(plan.getFieldCode(), is("$id"));
+    assertThat(
+        plan.getQueries(), is(Collections.singletonList("$id in (\"3\",\"1\",\"2\",\"1\")")));
+  }
+
+  @Test
+  public void testIdRange() {
+    List<Long> ids = new ArrayList<>();
+    ids.add(5000L);
+    // Every other id from 1 to 399 is dense enough to be a range
+    for (long id = 1; id < 400; id += 2) {
+      ids.add(id);
+    }
+    ids.add(1000L);
+    LookupPlan plan = LookupPlanner.planIds(ids);
+    assertThat(
+        plan.getQueries(),
+        is(Arrays.asList("$id >= 1 and $id <= 399", "$id in (\"5000\",\"1000\")")));
+  }
+
+  @Test
+  public void testSparseIds() {
+    List<Long> ids = new ArrayList<>();
+    for (long id = 1; id <= LookupPlanner.MIN_RANGE_SIZE; id++) {
+      ids.add(id * 10);
+    }
+    LookupPlan plan = LookupPlanner.planIds(ids);
+    assertThat(plan.getQueries().size(), is(1));
+    assertThat(plan.getQueries().get(0).startsWith("$id in ("), is(true));
+  }
+
+  @Test
+  public void testSplitByValues() {
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < LookupPlanner.MAX_IN_VALUES * 2 + 1; i++) {
+      values.add("key" + i);
+    }
+    LookupPlan plan = LookupPlanner.planUpdateKeys("code", values);
+    assertThat(plan.getQueries().size(), is(3));
+    assertThat(plan.getQueries().get(2), is("code in (\"key1000\")"));
+  }
+
+  @Test
+  public void testSplitByLength() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < LookupPlanner.MAX_IN_LENGTH / 2; i++) {
+      builder.append('a');
+    }
+    String value = builder.toString();
+    LookupPlan plan = LookupPlanner.planUpdateKeys("code", Arrays.asList(value, value, value));
+    assertThat(plan.getQueries().size(), is(3));
+    for (String query : plan.getQueries()) {
+      assertThat(query.length() <= LookupPlanner.MAX_IN_LENGTH + "code in ()".length(), is(true));
+    }
+  }
+}
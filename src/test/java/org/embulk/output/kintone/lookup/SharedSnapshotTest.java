@@ -0,0 +1,46 @@
+package org.embulk.output.kintone.lookup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SharedSnapshotTest {
+  @Test
+  public void testDownloadOnce() {
+    AtomicInteger downloads = new AtomicInteger();
+    try (SharedSnapshot first = SharedSnapshot.acquire("snapshot.once", null, 1, "key");
+        SharedSnapshot second = SharedSnapshot.acquire("snapshot.once", null, 1, "key")) {
+      ExistenceIndex index =
+          first.get(
+              () -> {
+                downloads.incrementAndGet();
+                ExistenceIndex downloaded = ExistenceIndex.forUpdateKey(false, 1);
+                downloaded.put("foo", 1L);
+                return downloaded;
+              });
+      ExistenceIndex shared = second.get(() -> ExistenceIndex.forUpdateKey(false, 0));
+      assertThat(downloads.get(), is(1));
+      assertThat(shared.getId("foo"), is(1L));
+      // Keys inserted by a task are seen by the others
+      index.add("bar");
+      assertThat(shared.contains("bar"), is(true));
+    }
+    // The snapshot is downloaded again once all tasks have released it
+    try (SharedSnapshot snapshot = SharedSnapshot.acquire("snapshot.once", null, 1, "key")) {
+      assertThat(snapshot.get(() -> ExistenceIndex.forUpdateKey(false, 0)).size(), is(0));
+    }
+  }
+
+  @Test
+  public void testWindow() {
+    try (SharedSnapshot first = SharedSnapshot.acquire("snapshot.window", null, 1, "key");
+        SharedSnapshot second = SharedSnapshot.acquire("snapshot.window", null, 1, "key")) {
+      assertThat(first.get(() -> null), is(nullValue()));
+      // Not downloaded again, since the app has been found to be too large
+      assertThat(second.get(() -> ExistenceIndex.forId(0)), is(nullValue()));
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.embulk.output.kintone.reducer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+
+public class MergeIteratorTest {
+  @Test
+  public void testMerge() {
+    List<Iterator<Integer>> iterators =
+        Arrays.asList(
+            Arrays.asList(1, 4, 7).iterator(),
+            Collections.<Integer>emptyIterator(),
+            Arrays.asList(2, 5, 8).iterator(),
+            Arrays.asList(3, 6, 9, 10).iterator());
+    MergeIterator<Integer> merged = new MergeIterator<>(iterators, Comparator.naturalOrder());
+    List<Integer> values = new ArrayList<>();
+    merged.forEachRemaining(values::add);
+    assertThat(values, contains(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+    assertThat(merged.hasNext(), is(false));
+    assertThrows(NoSuchElementException.class, merged::next);
+  }
+
+  @Test
+  public void testStable() {
+    List<Iterator<String>> iterators =
+        Arrays.asList(
+            Arrays.asList("a1", "b1").iterator(),
+            Arrays.asList("a2", "b2").iterator(),
+            Arrays.asList("a3").iterator());
+    MergeIterator<String> merged =
+        new MergeIterator<>(iterators, Comparator.comparing(value -> value.charAt(0)));
+    List<String> values = new ArrayList<>();
+    merged.forEachRemaining(values::add);
+    assertThat(values, contains("a1", "a2", "a3", "b1", "b2"));
+  }
+}
@@ -19,14 +19,21 @@ import static org.embulk.spi.type.Types.LONG;
 import static org.embulk.spi.type.Types.STRING;
 import static org.embulk.spi.type.Types.TIMESTAMP;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import org.embulk.output.kintone.KintoneColumnOption;
 import org.embulk.output.kintone.KintoneColumnOptionBuilder;
 import org.embulk.output.kintone.KintoneColumnType;
+import org.embulk.output.kintone.KintoneSortColumn;
 import org.embulk.spi.Column;
 import org.embulk.spi.type.Type;
 import org.junit.Test;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
 
 public class ReduceTypeTest {
   @Test
@@ -133,23 +140,44 @@ public class ReduceTypeTest {
     assertJson(JSON, MULTI_LINE_TEXT, null, "{\"type\":\"MULTI_LINE_TEXT\",\"value\":null}");
   }
 
+  @Test
+  public void rowComparator() {
+    Column column = new Column(1, "json", JSON);
+    Row a = row(ValueFactory.newArray(ValueFactory.newString("a")));
+    Row b = row(ValueFactory.newMap(ValueFactory.newString("b"), ValueFactory.newInteger(1)));
+    Row c = row(ValueFactory.newString("c"));
+    Row none = row(null);
+    // JSON values are ordered by their text, with nulls last in either order
+    List<Row> rows = Arrays.asList(none, c, b, a);
+    rows.sort(ReduceType.rowComparator(column, KintoneSortColumn.Order.ASC));
+    assertThat(rows, contains(c, a, b, none));
+    rows.sort(ReduceType.rowComparator(column, KintoneSortColumn.Order.DESC));
+    assertThat(rows, contains(b, a, c, none));
+  }
+
+  private static Row row(Value value) {
+    return new Row(new Object[] {null, value});
+  }
+
   private static void assertJson(Type from, KintoneColumnType to, String value, String expected) {
     assertJson(from, to, "UTC", value, expected);
   }
 
   private static void assertJson(
       Type from, KintoneColumnType to, String timezone, String value, String expected) {
+    Column column = new Column(0, "", from);
+    KintoneColumnOption option =
+        new KintoneColumnOptionBuilder()
+            .setType(to.name())
+            .setTimezone(timezone)
+            .setValueSeparator(",")
+            .build();
     assertThat(
-        ReduceType.value(
-                new Column(0, "", from),
-                Collections.singletonList(value),
-                new KintoneColumnOptionBuilder()
-                    .setType(to.name())
-                    .setTimezone(timezone)
-                    .setValueSeparator(",")
-                    .build(),
-                null)
-            .toJson(),
+        ReduceType.value(column, Collections.singletonList(value), option, null).toJson(),
         is(expected));
+    // Typed values of rows are converted the same as their text
+    ReduceType type = ReduceType.valueOf(from.getName().toUpperCase());
+    Row row = new Row(new Object[] {value == null ? null : type.parse(value)});
+    assertThat(ReduceType.value(column, row, option, null).toJson(), is(expected));
   }
 }
@@ -0,0 +1,63 @@
+package org.embulk.output.kintone.reducer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import org.embulk.output.kintone.KintoneSortCompression;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.msgpack.value.ValueFactory;
+
+public class RowReaderTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (KintoneSortCompression compression : KintoneSortCompression.values()) {
+      testRoundTrip(compression);
+    }
+  }
+
+  private void testRoundTrip(KintoneSortCompression compression) throws IOException {
+    Schema schema =
+        Schema.builder()
+            .add("boolean", Types.BOOLEAN)
+            .add("long", Types.LONG)
+            .add("double", Types.DOUBLE)
+            .add("string", Types.STRING)
+            .add("timestamp", Types.TIMESTAMP)
+            .add("json", Types.JSON)
+            .build();
+    Instant instant = Instant.ofEpochSecond(946684799, 123456789);
+    Object[] values = {
+      true, 123L, 1.5, "a\"b", instant, ValueFactory.newArray(ValueFactory.newString("c"))
+    };
+    File file = folder.newFile();
+    try (RowWriter writer = new RowWriter(file, schema, compression)) {
+      writer.write(new Row(values));
+      writer.write(new Row(new Object[6]));
+    }
+    try (RowReader reader = new RowReader(file, schema, compression)) {
+      Row row = reader.next();
+      assertThat(row.get(0), is(true));
+      assertThat(row.get(1), is(123L));
+      assertThat(row.get(2), is(1.5));
+      assertThat(row.get(3), is("a\"b"));
+      assertThat(row.get(4), is(instant));
+      assertThat(row.getString(4), is("1999-12-31T23:59:59.123456789Z"));
+      assertThat(row.getString(5), is("[\"c\"]"));
+      row = reader.next();
+      for (int index = 0; index < row.size(); index++) {
+        assertThat(row.get(index), is(nullValue()));
+      }
+      assertThat(reader.hasNext(), is(false));
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.embulk.output.kintone.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EagerLazyTest {
+  @Test
+  public void testGet() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    Thread caller = Thread.currentThread();
+    EagerLazy<Value> lazy =
+        new EagerLazy<>(
+            () -> {
+              started.countDown();
+              return new Value(Thread.currentThread());
+            },
+            "test");
+    // Initialized before the first get
+    assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+    Value value = lazy.get();
+    assertThat(value.thread, is(not(sameInstance(caller))));
+    assertThat(lazy.get(), is(sameInstance(value)));
+    lazy.close();
+    assertThat(value.closed, is(true));
+  }
+
+  @Test
+  public void testError() {
+    EagerLazy<Value> lazy =
+        new EagerLazy<>(
+            () -> {
+              throw new IllegalStateException("error");
+            },
+            "test");
+    assertThrows(IllegalStateException.class, lazy::get);
+  }
+
+  private static class Value implements AutoCloseable {
+    private final Thread thread;
+    private boolean closed;
+
+    private Value(Thread thread) {
+      this.thread = thread;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package org.embulk.output.kintone.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.time.LocalDate;
+import org.junit.Test;
+
+public class TemporalCacheTest {
+  @Test
+  public void testGet() {
+    TemporalCache<LocalDate> cache = new TemporalCache<>(4);
+    assertThat(cache.get(1, LocalDate::ofEpochDay), is(LocalDate.of(1970, 1, 2)));
+    assertThat(cache.get(1, LocalDate::ofEpochDay), is(LocalDate.of(1970, 1, 2)));
+    assertThat(cache.get(-1, LocalDate::ofEpochDay), is(LocalDate.of(1969, 12, 31)));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(2L));
+  }
+
+  @Test
+  public void testBounded() {
+    TemporalCache<LocalDate> cache = new TemporalCache<>(4);
+    for (long day = 0; day < 1000; day++) {
+      assertThat(cache.get(day, LocalDate::ofEpochDay), is(LocalDate.ofEpochDay(day)));
+    }
+    assertThat(cache.getMisses(), is(1000L));
+  }
+}